@@ -0,0 +1,125 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * 기존의 lineList + String.split 방식과 SourceLexer 방식의 소스 분석 속도와 할당량을 비교한다.
+ *
+ * 사용법 : java LexerBenchmark [input 파일] [반복 횟수]
+ *
+ * input 파일의 내용을 반복 횟수만큼 이어 붙인 임시 파일을 만들고, 두 방식으로 각각 모든 줄을 Token으로 만든다.
+ * symbol 중복 검사 등 pass1의 나머지 작업은 두 방식이 같으므로 측정에서 제외한다.
+ */
+public class LexerBenchmark {
+	private static final int WARMUP = 3;
+	private static final int MEASURE = 5;
+
+	public static void main(String[] args) throws IOException {
+		String source = args.length > 0 ? args[0] : "input.txt";
+		int repeat = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		File input = replicate(source, repeat);
+		System.out.println("bytes : " + input.length());
+
+		for (int i = 0; i < WARMUP; i++) {
+			splitPath(input.getPath());
+			lexerPath(input.getPath());
+		}
+		report("split ", input, false);
+		report("lexer ", input, true);
+	}
+
+	/**
+	 * @return : 파일의 줄 수
+	 */
+	static int countLines(String source) throws IOException {
+		int lines = 0;
+		try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+			while (reader.readLine() != null)
+				lines++;
+		}
+		return lines;
+	}
+
+	/**
+	 * source 파일의 내용을 repeat 번 이어 붙인 임시 파일을 만든다. 프로그램 끝에 삭제된다.
+	 */
+	static File replicate(String source, int repeat) throws IOException {
+		File input = File.createTempFile("bench", ".txt");
+		input.deleteOnExit();
+		ArrayList<String> lines = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				lines.add(line);
+		}
+		try (PrintWriter writer = new PrintWriter(input)) {
+			for (int i = 0; i < repeat; i++)
+				for (String line : lines)
+					writer.println(line);
+		}
+		return input;
+	}
+
+	private static void report(String name, File input, boolean lexer) throws IOException {
+		long bestTime = Long.MAX_VALUE;
+		long bytes = 0;
+		int tokens = 0;
+		for (int i = 0; i < MEASURE; i++) {
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			tokens = lexer ? lexerPath(input.getPath()) : splitPath(input.getPath());
+			long time = System.nanoTime() - start;
+			bytes = allocatedBytes() - allocated;
+			bestTime = Math.min(bestTime, time);
+		}
+		System.out.println(name + ": " + bestTime / 1000000 + " ms, "
+				+ (long) (tokens / (bestTime / 1e9)) + " lines/s, "
+				+ bytes / tokens + " bytes/line");
+	}
+
+	/** 기존 방식 : 파일 전체를 lineList에 저장한 뒤 split으로 나눈다. */
+	private static int splitPath(String fileName) throws IOException {
+		ArrayList<String> lineList = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				lineList.add(line);
+		}
+		int tokens = 0;
+		for (String line : lineList) {
+			if (line.split("\t")[0].equals("."))
+				continue;
+			if (new Token(line).operator != null)
+				tokens++;
+		}
+		return tokens;
+	}
+
+	/** SourceLexer 방식 : mapping된 buffer에서 바로 Token을 만든다. */
+	private static int lexerPath(String fileName) throws IOException {
+		SourceLexer lexer = new SourceLexer(fileName);
+		int tokens = 0;
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
+				continue;
+			if (new Token(lexer).operator != null)
+				tokens++;
+		}
+		return tokens;
+	}
+
+	/**
+	 * 현재 thread가 지금까지 할당한 byte 수. HotSpot 계열 JVM에서만 지원된다.
+	 */
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+}
@@ -0,0 +1,124 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * WorkloadGenerator로 control section이 많은 프로그램을 만들어 어셈블한 뒤, 그 object program을 LinkingLoader로
+ * link, load 하는 속도를 측정한다.
+ *
+ * 사용법 : java LoaderBenchmark [section 수...] [key=value...]
+ *
+ * section 수의 기본값은 1000, 5000, 20000 이며, key=value는 WorkloadGenerator의 설정이다. (이 benchmark에서
+ * lines의 기본값은 100이다)
+ *
+ * time은 object 파일을 먼저 메모리에 읽어 두고, 파일 읽기를 뺀 link, load 시간만 잰 것이다. text file, binary
+ * file은 같은 프로그램을 text 형식과 BinaryObjectWriter의 binary 형식 파일로 저장한 뒤 파일 읽기(binary는
+ * memory-map)를 포함하여 잰 시간이다. 각 크기마다 warmup 뒤 여러 번 수행하여 가장 빠른 시간을 출력한다.
+ *
+ * 측정하기 전에 binary 파일과 OnePassAssembler의 출력도 load하여 같은 memory image가 되는지 확인한다.
+ * (예 : java LoaderBenchmark 20 lines=500 seed=3)
+ */
+public class LoaderBenchmark {
+	private static final int WARMUP = 20;
+	private static final int MEASURE = 10;
+
+	public static void main(String[] args) throws IOException {
+		int[] sizes = { 1000, 5000, 20000 };
+		int count = 0;
+		for (String arg : args)
+			if (arg.indexOf('=') < 0)
+				count++;
+		if (count > 0) {
+			sizes = new int[count];
+			count = 0;
+			for (String arg : args)
+				if (arg.indexOf('=') < 0)
+					sizes[count++] = Integer.parseInt(arg);
+		}
+
+		File dir = Files.createTempDirectory("loader").toFile();
+		File input = new File(dir, "input.txt");
+		File output = new File(dir, "output");
+		InstTable instTable = InstTable.load("inst.data");
+
+		PrintStream console = System.out;
+		File binary = new File(dir, "output.sxo");
+		File onePass = new File(dir, "output.onepass");
+		console.printf("%9s %10s %10s %10s %10s %10s %14s %10s %10s%n", "sections", "text KB", "binary KB",
+				"T records", "M records", "time(ms)", "M records/s", "text file", "binary file");
+		for (int size : sizes) {
+			WorkloadGenerator generator = new WorkloadGenerator();
+			generator.lines = 100;
+			for (String arg : args)
+				if (arg.indexOf('=') >= 0)
+					generator.set(arg);
+			generator.sections = size;
+			try (Writer out = new BufferedWriter(new FileWriter(input))) {
+				generator.write(out);
+			}
+
+			// 생성된 소스의 EQU, WORD 경고 등 assembler가 System.out에 쓰는 내용은 버린다.
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			try {
+				Assembler assembler = new Assembler(instTable);
+				assembler.binaryFile = binary.getPath();
+				assembler.assemble(input.getPath(), new File(dir, "symtab").getPath(),
+						new File(dir, "literaltab").getPath(), output.getPath());
+				new OnePassAssembler(instTable).assemble(input.getPath(), new File(dir, "symtab").getPath(),
+						new File(dir, "literaltab").getPath(), onePass.getPath());
+			} finally {
+				System.setOut(console);
+			}
+			byte[][] objects = { Files.readAllBytes(output.toPath()) };
+
+			long best = Long.MAX_VALUE;
+			LinkingLoader loader = null;
+			for (int i = 0; i < WARMUP + MEASURE; i++) {
+				loader = new LinkingLoader();
+				long start = System.nanoTime();
+				loader.load(objects);
+				long time = System.nanoTime() - start;
+				if (i >= WARMUP)
+					best = Math.min(best, time);
+			}
+			if (loader.errors > 0)
+				console.println("loader errors : " + loader.errors);
+			byte[] image = loader.memory;
+			long text = loadFile(output);
+			long bin = loadFile(binary);
+			LinkingLoader check = new LinkingLoader();
+			check.load(Arrays.asList(binary.getPath()));
+			if (!Arrays.equals(image, check.memory))
+				console.println("binary image differs");
+			check = new LinkingLoader();
+			check.load(Arrays.asList(onePass.getPath()));
+			if (!Arrays.equals(image, check.memory))
+				console.println("one-pass image differs");
+			console.printf("%9d %10d %10d %10d %10d %10.2f %14.0f %10.2f %10.2f%n", size, output.length() / 1024,
+					binary.length() / 1024, loader.textRecords, loader.modificationRecords, best / 1e6,
+					loader.modificationRecords / (best / 1e9), text / 1e6, bin / 1e6);
+		}
+	}
+
+	/**
+	 * @return : 파일 하나를 읽어 link, load 하는 데 걸린 가장 짧은 시간(ns)
+	 */
+	private static long loadFile(File file) throws IOException {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP + MEASURE; i++) {
+			LinkingLoader loader = new LinkingLoader();
+			long start = System.nanoTime();
+			loader.load(Arrays.asList(file.getPath()));
+			long time = System.nanoTime() - start;
+			if (i >= WARMUP)
+				best = Math.min(best, time);
+		}
+		return best;
+	}
+}
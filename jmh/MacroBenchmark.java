@@ -0,0 +1,251 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 매크로 호출이 대부분인 소스로 pass1(매크로 전개 포함)의 처리량을 측정한다.
+ *
+ * 사용법 : java MacroBenchmark [호출 수...]
+ *
+ * 호출 수의 기본값은 10000, 100000, 1000000 이며, section 하나에 200개의 호출이 들어간다.
+ *
+ * 측정 방법
+ * 1) text : 매크로 본문의 문자열에서 parameter를 String.replace()로 바꾸어 전개된 소스 파일을 만든 뒤, 그 파일을
+ * 다시 읽어 pass1을 수행한다. (전처리기 방식)
+ * 2) native : MacroProcessor로 전개하여 Token을 pass1에 바로 넘긴다. memo를 사용하지 않는다.
+ * 3) native+memo : 2)와 같으며 인자가 같은 호출의 전개 결과를 재사용한다.
+ * 4) expanded : 1)에서 만든 전개된 소스 파일로 pass1만 수행한다. (매크로가 없을 때의 기준)
+ * 5) expand, expand+memo : pass1 없이 MacroProcessor의 전개만 수행한다. (memo 사용 여부)
+ *
+ * lines/s는 전개된 줄 수 기준이며, 각 방법은 warmup 뒤 여러 번 수행하여 가장 빠른 시간을 사용한다.
+ */
+public class MacroBenchmark {
+	private static final int WARMUP = 5;
+	private static final int MEASURE = 5;
+	private static final int CALLS_PER_SECTION = 200;
+	private static final int VARIABLES = 16;
+
+	/** 측정에 사용하는 매크로. '$'를 쓰는 WAITRD는 memo 대상이 아니며, COPYW는 다른 매크로를 호출한다. */
+	private static final String MACROS = ""
+			+ "LOADADD\tMACRO\t&A,&B,&C\n"
+			+ "\tLDA\t&A\n"
+			+ "\tADD\t&B\n"
+			+ "\tSTA\t&C\n"
+			+ "\tMEND\n"
+			+ "CLR\tMACRO\t&R\n"
+			+ "\tCLEAR\t&R\n"
+			+ "\tCOMPR\t&R,&R\n"
+			+ "\tMEND\n"
+			+ "WAITRD\tMACRO\t&DEV,&BUF\n"
+			+ "$L\tTD\t&DEV\n"
+			+ "\tJEQ\t$L\n"
+			+ "\tRD\t&DEV\n"
+			+ "\tSTCH\t&BUF,X\n"
+			+ "\tMEND\n"
+			+ "COPYW\tMACRO\t&S,&D,&N=1\n"
+			+ "\tCLR\tX\n"
+			+ "\tLDA\t&S\n"
+			+ "\tSTA\t&D\n"
+			+ "\tLDT\t#&N\n"
+			+ "\tMEND\n";
+
+	public static void main(String[] args) throws IOException {
+		int[] sizes = { 10000, 100000, 1000000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				sizes[i] = Integer.parseInt(args[i]);
+		}
+		InstTable instTable = InstTable.load("inst.data");
+		File dir = Files.createTempDirectory("macro").toFile();
+		File input = new File(dir, "input.txt");
+		File expanded = new File(dir, "expanded.txt");
+
+		PrintStream console = System.out;
+		console.printf("%9s %10s %13s %13s %13s %13s %13s %13s %9s%n", "calls", "lines", "text", "native",
+				"native+memo", "expanded", "expand", "expand+memo", "memo hit");
+		for (int calls : sizes) {
+			try (Writer out = new BufferedWriter(new FileWriter(input))) {
+				generate(out, calls);
+			}
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			long text;
+			long plain;
+			long memo;
+			long base;
+			long expand;
+			long expandMemo;
+			Assembler check;
+			try {
+				text = measure(() -> {
+					expandText(input, expanded);
+					new Assembler(instTable).pass1(new SourceLexer(expanded.getPath()));
+				});
+				plain = measure(() -> {
+					Assembler assembler = new Assembler(instTable);
+					assembler.macros.memoise = false;
+					assembler.pass1(new SourceLexer(input.getPath()));
+				});
+				memo = measure(() -> new Assembler(instTable).pass1(new SourceLexer(input.getPath())));
+				base = measure(() -> new Assembler(instTable).pass1(new SourceLexer(expanded.getPath())));
+				expand = measure(() -> expandOnly(input, false));
+				expandMemo = measure(() -> expandOnly(input, true));
+
+				check = new Assembler(instTable);
+				check.pass1(new SourceLexer(input.getPath()));
+				Assembler reference = new Assembler(instTable);
+				reference.pass1(new SourceLexer(expanded.getPath()));
+				if (!symbols(check).equals(symbols(reference)))
+					console.println("symbol tables differ");
+			} finally {
+				System.setOut(console);
+			}
+			long lines = check.macros.expandedLines;
+			console.printf("%9d %10d %13s %13s %13s %13s %13s %13s %8.1f%%%n", calls, lines, rate(lines, text),
+					rate(lines, plain), rate(lines, memo), rate(lines, base), rate(lines, expand),
+					rate(lines, expandMemo), 100.0 * check.macros.memoHits / check.macros.expansions);
+		}
+	}
+
+	private interface Run {
+		void run() throws IOException;
+	}
+
+	/**
+	 * @return : warmup 뒤 MEASURE번 수행한 것 중 가장 짧은 시간(ns)
+	 */
+	private static long measure(Run run) throws IOException {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < WARMUP + MEASURE; i++) {
+			long start = System.nanoTime();
+			run.run();
+			long time = System.nanoTime() - start;
+			if (i >= WARMUP)
+				best = Math.min(best, time);
+		}
+		return best;
+	}
+
+	/**
+	 * input을 읽어 매크로만 전개하고 전개된 Token은 버린다.
+	 */
+	private static void expandOnly(File input, boolean memoise) throws IOException {
+		MacroProcessor macros = new MacroProcessor();
+		macros.memoise = memoise;
+		SourceLexer lexer = new SourceLexer(input.getPath());
+		int[] count = new int[1];
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
+				continue;
+			macros.process(new Token(lexer), token -> count[0]++);
+		}
+		macros.finish();
+	}
+
+	private static String rate(long lines, long nanos) {
+		return String.format("%.2fM l/s", lines / (nanos / 1e9) / 1e6);
+	}
+
+	private static String symbols(Assembler assembler) {
+		StringBuilder result = new StringBuilder();
+		for (LabelTable symtab : assembler.symtabList)
+			result.append(Assembler.formatSymbolTable(symtab));
+		return result.toString();
+	}
+
+	/**
+	 * 매크로 정의 뒤에 calls개의 호출을 section별로 나누어 쓴다. 인자는 VARIABLES개의 변수에서 고르므로 같은 인자의
+	 * 호출이 반복된다.
+	 */
+	private static void generate(Writer out, int calls) throws IOException {
+		Random random = new Random(calls);
+		String[] registers = { "A", "S", "T" };
+		out.write(MACROS);
+		int sections = (calls + CALLS_PER_SECTION - 1) / CALLS_PER_SECTION;
+		for (int s = 0; s < sections; s++) {
+			out.write("SEC" + s + (s == 0 ? "\tSTART\t0\n" : "\tCSECT\n"));
+			for (int i = 0; i < CALLS_PER_SECTION && s * CALLS_PER_SECTION + i < calls; i++) {
+				String a = "V" + random.nextInt(VARIABLES);
+				String b = "V" + random.nextInt(VARIABLES);
+				switch (random.nextInt(4)) {
+				case 0:
+					out.write("\tLOADADD\t" + a + "," + b + ",V" + random.nextInt(VARIABLES) + "\n");
+					break;
+				case 1:
+					out.write("\tCLR\t" + registers[random.nextInt(registers.length)] + "\n");
+					break;
+				case 2:
+					out.write("\tWAITRD\t=X'F1'," + a + "\n");
+					break;
+				default:
+					out.write("\tCOPYW\t" + a + "," + b + (random.nextBoolean() ? "" : ",2") + "\n");
+					break;
+				}
+			}
+			for (int v = 0; v < VARIABLES; v++)
+				out.write("V" + v + "\tRESW\t1\n");
+		}
+		out.write("\tEND\tSEC0\n");
+	}
+
+	/**
+	 * 전처리기 방식으로 매크로를 전개하여 output 파일에 쓴다. 본문은 줄 단위 문자열로 저장하고, 호출할 때마다
+	 * parameter를 String.replace()로 바꾼 뒤 다시 전개한다.
+	 */
+	static void expandText(File input, File output) throws IOException {
+		HashMap<String, String[]> params = new HashMap<String, String[]>();
+		HashMap<String, List<String>> bodies = new HashMap<String, List<String>>();
+		int[] unique = new int[1];
+		try (Writer out = new BufferedWriter(new FileWriter(output))) {
+			List<String> lines = Files.readAllLines(input.toPath());
+			for (int i = 0; i < lines.size(); i++) {
+				String[] fields = lines.get(i).split("\t", -1);
+				if (fields.length > 1 && fields[1].equals("MACRO")) {
+					params.put(fields[0], fields.length > 2 ? fields[2].split(",") : new String[0]);
+					List<String> body = new ArrayList<String>();
+					while (!lines.get(++i).split("\t", -1)[1].equals("MEND"))
+						body.add(lines.get(i));
+					bodies.put(fields[0], body);
+				}
+				else
+					expandLine(lines.get(i), params, bodies, unique, out);
+			}
+		}
+	}
+
+	private static void expandLine(String line, HashMap<String, String[]> params, HashMap<String, List<String>> bodies,
+			int[] unique, Writer out) throws IOException {
+		String[] fields = line.split("\t", -1);
+		List<String> body = fields.length > 1 ? bodies.get(fields[1]) : null;
+		if (body == null) {
+			out.write(line);
+			out.write('\n');
+			return;
+		}
+		String[] names = params.get(fields[1]);
+		String[] values = fields.length > 2 ? fields[2].split(",", -1) : new String[0];
+		boolean labels = false;
+		for (String text : body)
+			labels |= text.indexOf('$') >= 0;
+		String id = labels ? MacroProcessor.unique(unique[0]++) : "";
+		for (String text : body) {
+			for (int k = 0; k < names.length; k++) {
+				int eq = names[k].indexOf('=');
+				String name = eq < 0 ? names[k] : names[k].substring(0, eq);
+				String value = k < values.length && !values[k].isEmpty() ? values[k]
+						: eq < 0 ? "" : names[k].substring(eq + 1);
+				text = text.replace(name, value);
+			}
+			expandLine(text.replace("$", id), params, bodies, unique, out);
+		}
+	}
+}
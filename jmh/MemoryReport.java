@@ -0,0 +1,77 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+
+/**
+ * pass1, pass2가 끝난 뒤 assembler가 붙잡고 있는 heap의 크기를 줄 단위로 보고한다.
+ *
+ * 사용법 : java MemoryReport [줄 수] [key=value...]
+ *
+ * WorkloadGenerator로 소스를 만들고(key=value는 그 설정), pass1과 pass2를 수행한 뒤 GC를 여러 번 수행하여 남은
+ * heap 사용량을 측정한다. 같은 방법으로 측정한 InstTable만 있는 상태의 사용량을 빼서 줄 수로 나눈다.
+ *
+ * 이어서 section마다 출력하고 Token을 버리는 pass2(fileName)을 수행한 뒤 남은 사용량(symbol, literal table 등)도
+ * 보고한다.
+ */
+public class MemoryReport {
+
+	public static void main(String[] args) throws IOException {
+		long size = 1000000;
+		WorkloadGenerator generator = new WorkloadGenerator();
+		for (String arg : args) {
+			if (arg.indexOf('=') >= 0)
+				generator.set(arg);
+			else
+				size = Long.parseLong(arg);
+		}
+		generator.sections = (int) Math.max(1, size / generator.lines);
+		File input = File.createTempFile("memory", ".txt");
+		input.deleteOnExit();
+		long lines;
+		try (Writer out = new BufferedWriter(new FileWriter(input))) {
+			lines = generator.write(out);
+		}
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		InstTable instTable = new InstTable("inst.data");
+		long base = usedHeap();
+		Assembler assembler = new Assembler(instTable);
+		assembler.pass1(new SourceLexer(input.getPath()));
+		assembler.pass2();
+		long used = usedHeap() - base;
+		System.setOut(console);
+
+		console.printf("lines : %d, retained : %.1f MB, %.1f bytes/line%n", lines, used / 1e6, (double) used / lines);
+		// 측정이 끝날 때까지 assembler가 수거되지 않도록 한다.
+		if (assembler.TokenList.isEmpty())
+			console.println("no section");
+
+		File output = File.createTempFile("memory", ".obj");
+		output.deleteOnExit();
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		assembler = new Assembler(instTable);
+		assembler.pass1(new SourceLexer(input.getPath()));
+		assembler.pass2(output.getPath());
+		used = usedHeap() - base;
+		System.setOut(console);
+
+		console.printf("after streaming pass2 : %.1f MB, %.1f bytes/line%n", used / 1e6, (double) used / lines);
+		if (assembler.TokenList.isEmpty())
+			console.println("no section");
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
@@ -0,0 +1,52 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * pass2(object code 생성)의 속도와 한 줄당 할당량을 측정한다.
+ *
+ * 사용법 : java Pass2Benchmark [input 파일] [반복 횟수]
+ *
+ * input 파일을 반복 횟수만큼 이어 붙인 프로그램에 대해 pass1을 한 번 수행한 뒤, 매번 새 Assembler로 pass2만
+ * 측정한다. pass1이 남긴 locctr 등 상태를 다시 쓰지 않도록 측정마다 pass1부터 다시 수행하지만 시간과 할당량은
+ * pass2 구간만 기록한다.
+ */
+public class Pass2Benchmark {
+	private static final int WARMUP = 3;
+	private static final int MEASURE = 5;
+
+	public static void main(String[] args) throws IOException {
+		String source = args.length > 0 ? args[0] : "input.txt";
+		int repeat = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		File input = LexerBenchmark.replicate(source, repeat);
+
+		// 중복 literal 경고 등 pass1/pass2가 System.out에 쓰는 내용은 버린다.
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		long bestTime = Long.MAX_VALUE;
+		long bytes = 0;
+		long lines = 0;
+		for (int i = 0; i < WARMUP + MEASURE; i++) {
+			Assembler assembler = new Assembler("inst.data");
+			assembler.pass1(new SourceLexer(input.getPath()));
+			lines = 0;
+			for (TokenTable table : assembler.TokenList)
+				lines += table.size();
+
+			long allocated = LexerBenchmark.allocatedBytes();
+			long start = System.nanoTime();
+			assembler.pass2();
+			long time = System.nanoTime() - start;
+			if (i >= WARMUP) {
+				bytes = LexerBenchmark.allocatedBytes() - allocated;
+				bestTime = Math.min(bestTime, time);
+			}
+		}
+		System.setOut(console);
+		System.out.println("lines : " + lines);
+		System.out.println("pass2 : " + bestTime / 1000000 + " ms, " + (long) (lines / (bestTime / 1e9))
+				+ " lines/s, " + bytes / lines + " bytes/line");
+	}
+}
@@ -0,0 +1,100 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+
+/**
+ * WorkloadGenerator로 크기별 소스를 만들어 assembler 전체(pass1, table 출력, pass2, object program 출력)를 수행하고
+ * 처리량과 메모리 사용량을 보고한다.
+ *
+ * 사용법 : java ScalingReport [줄 수...] [key=value...]
+ *
+ * 줄 수의 기본값은 10k, 100k, 1M 이며, key=value는 WorkloadGenerator의 설정으로 전달된다 (lines는 section 당
+ * 줄 수이고 section 수는 전체 줄 수에 맞추어 정해진다). 각 크기마다 lines/s, 최대 heap 사용량, GC 횟수와 시간을
+ * 출력한다. 최대 heap 사용량은 측정 직전에 각 heap pool의 peak 값을 초기화한 뒤 측정이 끝났을 때의 peak 합이다.
+ */
+public class ScalingReport {
+
+	public static void main(String[] args) throws IOException {
+		long[] sizes = { 10000, 100000, 1000000 };
+		int count = 0;
+		for (String arg : args)
+			if (arg.indexOf('=') < 0)
+				count++;
+		if (count > 0) {
+			sizes = new long[count];
+			count = 0;
+			for (String arg : args)
+				if (arg.indexOf('=') < 0)
+					sizes[count++] = Long.parseLong(arg);
+		}
+
+		File dir = Files.createTempDirectory("scaling").toFile();
+		File input = new File(dir, "input.txt");
+		InstTable instTable = new InstTable("inst.data");
+
+		PrintStream console = System.out;
+		console.printf("%10s %9s %10s %12s %12s %8s %10s%n", "lines", "sections", "time(ms)", "lines/s",
+				"peak heap MB", "GC count", "GC ms");
+		for (long size : sizes) {
+			WorkloadGenerator generator = new WorkloadGenerator();
+			for (String arg : args)
+				if (arg.indexOf('=') >= 0)
+					generator.set(arg);
+			generator.sections = (int) Math.max(1, size / generator.lines);
+			long lines;
+			try (Writer out = new BufferedWriter(new FileWriter(input))) {
+				lines = generator.write(out);
+			}
+
+			System.gc();
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				pool.resetPeakUsage();
+			long gcCount = gcCount();
+			long gcTime = gcTime();
+			long start = System.nanoTime();
+
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+			try {
+				Assembler assembler = new Assembler(instTable);
+				assembler.assemble(input.getPath(), new File(dir, "symtab").getPath(),
+						new File(dir, "literaltab").getPath(), new File(dir, "output").getPath());
+			} finally {
+				System.setOut(console);
+			}
+
+			long nanos = System.nanoTime() - start;
+			long peak = 0;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				if (pool.getType() == MemoryType.HEAP)
+					peak += pool.getPeakUsage().getUsed();
+			console.printf("%10d %9d %10d %12d %12.1f %8d %10d%n", lines, generator.sections, nanos / 1000000,
+					(long) (lines / (nanos / 1e9)), peak / 1e6, gcCount() - gcCount, gcTime() - gcTime);
+		}
+		for (File file : dir.listFiles())
+			file.delete();
+		dir.delete();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+}
@@ -0,0 +1,153 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+/**
+ * assembler를 새 JVM으로 한 번 실행하는 데 걸리는 시간(JVM 시작 포함)을 설정별로 비교한다.
+ *
+ * 사용법 : java StartupBenchmark [실행 횟수]
+ *          java StartupBenchmark --archive [디렉토리]
+ *
+ * 현재 classpath의 class들을 assembler.jar로 묶고, 그 jar로 한 번 실행하면서 AppCDS archive(assembler.jsa)를
+ * 만든다. (CDS는 디렉토리가 아닌 jar의 class만 archive에 넣는다) --archive는 이 두 파일을 주어진 디렉토리에 만들고
+ * 끝나며, 이후에는 다음과 같이 실행한다.
+ *
+ * java -XX:SharedArchiveFile=assembler.jsa -cp assembler.jar Assembler
+ *
+ * 측정 설정
+ * 1) text : 지금까지의 방식. inst.data를 읽어 파싱한다. (--text-inst)
+ * 2) precompiled : PrecompiledInstTable을 사용한다.
+ * 3) precompiled + AppCDS : 2)에 AppCDS archive를 사용한다.
+ *
+ * 각 실행마다 output_0000에 첫 byte가 쓰일 때까지의 시간(first output)과 process가 끝날 때까지의 시간(exit)을
+ * 재고, 설정을 번갈아 실행한 뒤 중앙값을 출력한다. 현재 디렉토리의 input.txt와 inst.data를 사용한다.
+ */
+public class StartupBenchmark {
+	private static final int WARMUP = 3;
+	private static final long POLL_NANOS = 200000;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0 && args[0].equals("--archive")) {
+			Path dir = Paths.get(args.length > 1 ? args[1] : ".");
+			Path work = Files.createTempDirectory("startup");
+			copyInputs(work);
+			createArchive(dir.resolve("assembler.jar"), dir.resolve("assembler.jsa"), work);
+			System.out.println("created " + dir.resolve("assembler.jar") + ", " + dir.resolve("assembler.jsa"));
+			return;
+		}
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		Path work = Files.createTempDirectory("startup");
+		copyInputs(work);
+		Path jar = work.resolve("assembler.jar");
+		Path archive = work.resolve("assembler.jsa");
+		createArchive(jar, archive, work);
+
+		String[][] commands = {
+				{ java(), "-cp", jar.toString(), "Assembler", "--text-inst" },
+				{ java(), "-cp", jar.toString(), "Assembler" },
+				{ java(), "-XX:SharedArchiveFile=" + archive, "-Xshare:auto", "-cp", jar.toString(), "Assembler" } };
+		String[] names = { "text", "precompiled", "precompiled + AppCDS" };
+
+		long[][] first = new long[commands.length][runs];
+		long[][] exit = new long[commands.length][runs];
+		for (int i = -WARMUP; i < runs; i++) {
+			for (int c = 0; c < commands.length; c++) {
+				long[] time = run(commands[c], work);
+				if (i >= 0) {
+					first[c][i] = time[0];
+					exit[c][i] = time[1];
+				}
+			}
+		}
+
+		System.out.printf("%-24s %16s %12s%n", "setting", "first output ms", "exit ms");
+		for (int c = 0; c < commands.length; c++)
+			System.out.printf("%-24s %16.1f %12.1f%n", names[c], median(first[c]) / 1e6, median(exit[c]) / 1e6);
+	}
+
+	private static String java() {
+		return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+	}
+
+	private static void copyInputs(Path work) throws IOException {
+		Files.copy(Paths.get("input.txt"), work.resolve("input.txt"), StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(Paths.get("inst.data"), work.resolve("inst.data"), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * 현재 classpath의 디렉토리들에 있는 class를 jar로 묶고, 그 jar로 assembler를 한 번 실행하여 AppCDS archive를
+	 * 만든다.
+	 */
+	private static void createArchive(Path jar, Path archive, Path work) throws IOException, InterruptedException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "Assembler");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar.toFile()), manifest)) {
+			for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+				Path root = Paths.get(entry);
+				if (!Files.isDirectory(root))
+					continue;
+				List<Path> classes = new ArrayList<Path>();
+				try (Stream<Path> files = Files.walk(root)) {
+					files.filter(file -> file.toString().endsWith(".class")).forEach(classes::add);
+				}
+				for (Path file : classes) {
+					out.putNextEntry(new JarEntry(root.relativize(file).toString().replace(File.separatorChar, '/')));
+					out.write(Files.readAllBytes(file));
+					out.closeEntry();
+				}
+			}
+		}
+		Files.deleteIfExists(archive);
+		run(new String[] { java(), "-XX:ArchiveClassesAtExit=" + archive, "-cp", jar.toString(), "Assembler" },
+				work);
+		if (!Files.exists(archive))
+			throw new IOException("AppCDS archive was not created : " + archive);
+	}
+
+	/**
+	 * command를 work 디렉토리에서 실행한다.
+	 *
+	 * @return : {output_0000에 첫 byte가 쓰일 때까지의 시간, process가 끝날 때까지의 시간} (ns)
+	 */
+	private static long[] run(String[] command, Path work) throws IOException, InterruptedException {
+		Path output = work.resolve("output_0000");
+		Files.deleteIfExists(output);
+		ProcessBuilder builder = new ProcessBuilder(command).directory(work.toFile())
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.DISCARD);
+		long start = System.nanoTime();
+		Process process = builder.start();
+		long first = -1;
+		while (process.isAlive()) {
+			if (first < 0 && Files.exists(output) && Files.size(output) > 0)
+				first = System.nanoTime() - start;
+			// CPU가 하나뿐인 환경에서도 측정 대상 process를 방해하지 않도록 잠시 쉬면서 확인한다.
+			LockSupport.parkNanos(POLL_NANOS);
+		}
+		process.waitFor();
+		long end = System.nanoTime() - start;
+		if (first < 0)
+			first = end;
+		return new long[] { first, end };
+	}
+
+	private static long median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+}
@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * pass1, pass2, printObjectCode를 1k, 100k, 1M 줄의 소스로 측정한다. 소스는 input.txt를 반복해서 만든다.
+ *
+ * pass2와 printObjectCode는 이미 만든 object code나 Token을 바꾸므로 매번 새 Assembler가 필요하다. 준비
+ * 과정(Level.Invocation setup)은 시간에서 빠지지만 gc profiler의 할당량(gc.alloc.rate.norm)에는 포함되므로,
+ * pass2만의 할당량은 이 값에서 pass1의 값을 뺀 것이다. (printObjectCode는 pass1 + pass2의 값을 뺀다)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class AssemblerBenchmark {
+	@Param({ "1000", "100000", "1000000" })
+	int lines;
+
+	String input;
+	String output;
+	Object instTable;
+	private PrintStream console;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		// 반복된 section 이름에 대한 중복 symbol 경고 등 assembler가 System.out에 쓰는 내용은 버린다.
+		console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		input = Assembly.replicate("input.txt", lines).getPath();
+		File file = File.createTempFile("bench", ".obj");
+		file.deleteOnExit();
+		output = file.getPath();
+		instTable = Assembly.LOAD_INST_TABLE.invoke("inst.data");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(console);
+	}
+
+	/** pass1까지 마친 Assembler. 측정할 때마다 새로 만든다. */
+	@State(Scope.Thread)
+	public static class AfterPass1 {
+		Object assembler;
+
+		@Setup(Level.Invocation)
+		public void setUp(AssemblerBenchmark benchmark) throws Throwable {
+			assembler = Assembly.afterPass1(benchmark.instTable, benchmark.input);
+		}
+	}
+
+	/** pass2(object code 생성)까지 마친 Assembler. 측정할 때마다 새로 만든다. */
+	@State(Scope.Thread)
+	public static class AfterPass2 {
+		Object assembler;
+
+		@Setup(Level.Invocation)
+		public void setUp(AssemblerBenchmark benchmark) throws Throwable {
+			assembler = Assembly.afterPass1(benchmark.instTable, benchmark.input);
+			Assembly.PASS2.invoke(assembler);
+		}
+	}
+
+	@Benchmark
+	public Object pass1() throws Throwable {
+		return Assembly.afterPass1(instTable, input);
+	}
+
+	@Benchmark
+	public Object pass2(AfterPass1 state) throws Throwable {
+		Assembly.PASS2.invoke(state.assembler);
+		return state.assembler;
+	}
+
+	@Benchmark
+	public Object printObjectCode(AfterPass2 state) throws Throwable {
+		Assembly.PRINT_OBJECT_CODE.invoke(state.assembler, output);
+		return state.assembler;
+	}
+}
@@ -0,0 +1,93 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+/**
+ * 기본 package에 있는 assembler class를 benchmark에서 호출하기 위한 MethodHandle 모음.
+ *
+ * JMH는 기본 package의 class에 대해 benchmark 코드를 만들지 못하고, 이름 있는 package에서는 기본 package의
+ * class를 import할 수 없으므로 이름으로 찾는다. static final인 MethodHandle은 JIT가 상수로 다루어 inline하므로
+ * 직접 호출한 것과 측정 결과가 거의 같다.
+ */
+final class Assembly {
+	static final MethodHandle NEW_INST_TABLE = constructor("InstTable", String.class);
+	static final MethodHandle LOAD_INST_TABLE = method("InstTable", "load", String.class);
+	static final MethodHandle NEW_ASSEMBLER = constructor("Assembler", type("InstTable"));
+	static final MethodHandle NEW_LEXER = constructor("SourceLexer", String.class);
+	static final MethodHandle PASS1 = method("Assembler", "pass1", type("SourceLexer"));
+	static final MethodHandle PASS2 = method("Assembler", "pass2");
+	static final MethodHandle PRINT_OBJECT_CODE = method("Assembler", "printObjectCode", String.class);
+	static final MethodHandle NEW_LABEL_TABLE = constructor("LabelTable");
+	static final MethodHandle PUT_NAME = method("LabelTable", "putName", String.class, int.class);
+	static final MethodHandle SEARCH = method("LabelTable", "search", String.class);
+
+	private Assembly() {
+	}
+
+	/**
+	 * @return : pass1까지 마친 Assembler
+	 */
+	static Object afterPass1(Object instTable, String input) throws Throwable {
+		Object assembler = NEW_ASSEMBLER.invoke(instTable);
+		PASS1.invoke(assembler, NEW_LEXER.invoke(input));
+		return assembler;
+	}
+
+	/**
+	 * source 파일의 줄을 lines 줄이 되도록 반복해서 이어 붙인 임시 파일을 만든다.
+	 */
+	static File replicate(String source, int lines) throws IOException {
+		ArrayList<String> content = new ArrayList<String>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+			String line;
+			while ((line = reader.readLine()) != null)
+				content.add(line);
+		}
+		File input = File.createTempFile("bench", ".txt");
+		input.deleteOnExit();
+		try (PrintWriter writer = new PrintWriter(input)) {
+			int repeat = Math.max(1, lines / content.size());
+			for (int i = 0; i < repeat; i++)
+				for (String line : content)
+					writer.println(line);
+		}
+		return input;
+	}
+
+	private static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle constructor(String name, Class<?>... parameters) {
+		try {
+			Constructor<?> constructor = type(name).getDeclaredConstructor(parameters);
+			constructor.setAccessible(true);
+			return MethodHandles.lookup().unreflectConstructor(constructor);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MethodHandle method(String name, String method, Class<?>... parameters) {
+		try {
+			Method found = type(name).getDeclaredMethod(method, parameters);
+			found.setAccessible(true);
+			return MethodHandles.lookup().unreflect(found);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
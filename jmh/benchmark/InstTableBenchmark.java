@@ -0,0 +1,33 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * InstTable을 만드는 비용. construct는 inst.data를 읽어 파싱하고 perfect hash를 찾으며(--text-inst), load는
+ * inst.data의 CRC32를 확인한 뒤 PrecompiledInstTable을 사용한다.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class InstTableBenchmark {
+
+	@Benchmark
+	public Object construct() throws Throwable {
+		return Assembly.NEW_INST_TABLE.invoke("inst.data");
+	}
+
+	@Benchmark
+	public Object load() throws Throwable {
+		return Assembly.LOAD_INST_TABLE.invoke("inst.data");
+	}
+}
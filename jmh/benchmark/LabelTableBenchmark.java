@@ -0,0 +1,59 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 줄 수만큼의 symbol(L0, L1, ...)을 LabelTable에 추가(putName)하고 모두 검색(search)하는 비용. 한 번의 op가
+ * 전체 symbol을 처리하므로 symbol 하나당 비용은 결과를 lines로 나눈 것이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class LabelTableBenchmark {
+	@Param({ "1000", "100000", "1000000" })
+	int lines;
+
+	String[] names;
+	Object filled;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		names = new String[lines];
+		for (int i = 0; i < lines; i++)
+			names[i] = ("L" + i).intern();
+		filled = Assembly.NEW_LABEL_TABLE.invoke();
+		for (String name : names)
+			Assembly.PUT_NAME.invoke(filled, name, 0);
+	}
+
+	@Benchmark
+	public Object putName() throws Throwable {
+		Object table = Assembly.NEW_LABEL_TABLE.invoke();
+		for (String name : names)
+			Assembly.PUT_NAME.invoke(table, name, 0);
+		return table;
+	}
+
+	@Benchmark
+	public void search(Blackhole blackhole) throws Throwable {
+		for (String name : names)
+			blackhole.consume((int) Assembly.SEARCH.invoke(filled, name));
+	}
+}
@@ -8,7 +8,8 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.System.Logger;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Assembler: 이 프로그램은 SIC/XE 머신을 위한 Assembler 프로그램의 메인루틴이다. 프로그램의 수행 작업은 다음과 같다.
@@ -16,9 +17,11 @@ import java.util.StringTokenizer;
  * 
  * 2) 사용자가 작성한 input 파일을 읽어들인 후 저장한다
  * 
- * 3) input 파일의 문장들을 단어별로 분할하고 의미를 파악해서 정리한다. (pass1)
+ * 3) input 파일의 문장들을 단어별로 분할하고 의미를 파악해서 정리한다. (pass1) 매크로 호출은 MacroProcessor가
+ * 전개하여 pass1에 넘긴다.
  * 
- * 4) 분석된 내용을바탕으로 컴퓨터가 사용할 수 있는 object code를 생성한다. (pass2)
+ * 4) 분석된 내용을바탕으로 컴퓨터가 사용할 수 있는 object code를 생성한다. (pass2) section마다 object code를
+ * 만들자마자 출력하고 그 section의 Token을 버린다.
  * 
  * 
  */
@@ -34,12 +37,24 @@ public class Assembler {
 	ArrayList<LabelTable> literaltabList;
 	/** 프로그램의 section별로 프로그램을 저장하는 공간 */
 	ArrayList<TokenTable> TokenList;
-	/**
-	 * String codeList -> ArrayList<String>
-	 */
-	ArrayList<String> codeList;
 
-	public static int locctr = 0;
+	/** pass1에서 현재 처리 중인 section 번호 */
+	private int section;
+
+	/** 단계별 측정값을 모으는 곳. --stats를 주지 않으면 null */
+	AssemblerStats stats;
+
+	/** binary 형식 object program을 함께 저장할 파일 이름. --binary를 주지 않으면 null */
+	String binaryFile;
+
+	/** assembly listing을 저장할 파일 이름. --listing을 주지 않으면 null */
+	String listingFile;
+
+	/** true이면 pass1이 끝난 section마다 TokenTable.relax()로 닿지 않는 format 3 명령어를 format 4로 바꾼다. */
+	boolean relax;
+
+	/** pass1 앞에서 매크로를 전개하는 processor */
+	MacroProcessor macros = new MacroProcessor();
 
 	/**
 	 * 클래스 초기화. instruction Table을 초기화와 동시에 세팅한다.
@@ -47,29 +62,155 @@ public class Assembler {
 	 * @param instFile : instruction 명세를 작성한 파일 이름.
 	 */
 	public Assembler(String instFile) {
-		instTable = new InstTable(instFile);
+		this(InstTable.load(instFile));
+	}
+
+	/**
+	 * 이미 만들어진 instruction Table을 공유하는 Assembler를 만든다. 여러 파일을 동시에 어셈블할 때 사용한다.
+	 * 
+	 * @param instTable : 공유할 instruction Table
+	 */
+	public Assembler(InstTable instTable) {
+		this.instTable = instTable;
 
 		lineList = new ArrayList<String>();
 		symtabList = new ArrayList<LabelTable>();
 		literaltabList = new ArrayList<LabelTable>();
 		TokenList = new ArrayList<TokenTable>();
-		codeList = new ArrayList<String>();
 	}
 
 	/**
 	 * 어셈블러의 메인 루틴
+	 * 
+	 * --parallel 옵션을 주면 section(START, CSECT) 단위로 pass1과 pass2를 병렬로 수행한다.
+	 * 
+	 * --one-pass 옵션을 주면 Token을 저장하지 않고 한 번 읽으면서 출력하는 OnePassAssembler를 사용한다.
+	 * 
+	 * --stats 파일이름 옵션을 주면 단계별 시간, CPU 시간, 할당량과 주요 연산 횟수를 JSON 파일로 저장하고 JFR
+	 * event로도 남긴다. (AssemblerStats) --one-pass와 함께 주면 오류를 출력하고 끝낸다.
+	 * 
+	 * --binary 파일이름 옵션을 주면 object program을 BinaryObjectWriter의 binary 형식으로도 저장한다.
+	 * 
+	 * --listing 파일이름 옵션을 주면 pass2에서 줄마다 주소, 소스, object code를 ListingWriter로 출력한다.
+	 * (--one-pass에서는 사용할 수 없다)
+	 * 
+	 * --relax 옵션을 주면 PC relative로도 base relative로도 주소가 닿지 않는 format 3 명령어를 format 4로 바꾼다.
+	 * 주지 않으면 그런 명령어는 오류를 출력한다. (--one-pass에서는 사용할 수 없다)
+	 * 
+	 * instruction 명세는 inst.data가 바뀌지 않았으면 미리 만들어 둔 PrecompiledInstTable을 사용한다. --text-inst
+	 * 옵션을 주면 항상 inst.data를 읽는다. (StartupBenchmark의 비교 기준)
 	 */
 	public static void main(String[] args) {
-		Assembler assembler = new Assembler("inst.data");
-		assembler.loadInputFile("input.txt");
+		boolean parallel = false;
+		String statsFile = null;
+		boolean onePass = false;
+		boolean textInst = false;
+		String binaryFile = null;
+		String listingFile = null;
+		boolean relax = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--parallel"))
+				parallel = true;
+			else if (args[i].equals("--stats") && i + 1 < args.length)
+				statsFile = args[++i];
+			else if (args[i].equals("--one-pass"))
+				onePass = true;
+			else if (args[i].equals("--text-inst"))
+				textInst = true;
+			else if (args[i].equals("--binary") && i + 1 < args.length)
+				binaryFile = args[++i];
+			else if (args[i].equals("--listing") && i + 1 < args.length)
+				listingFile = args[++i];
+			else if (args[i].equals("--relax"))
+				relax = true;
+		}
+		if (statsFile != null && onePass) {
+			System.out.println("Option error : --stats cannot be used with --one-pass");
+			return;
+		}
+		AssemblerStats stats = statsFile != null ? new AssemblerStats() : null;
+		if (stats != null)
+			stats.begin("instTable");
+		InstTable instTable = textInst ? new InstTable("inst.data") : InstTable.load("inst.data");
 
-		assembler.pass1();
+		if (onePass) {
+			try {
+				new OnePassAssembler(instTable).assemble("input.txt", "symtab_0000", "literaltab_0000",
+						"output_0000");
+			} catch (IOException e) {
+				System.err.println("Input error : cannot assemble input.txt (" + e + ")");
+				System.exit(1);
+			}
+			return;
+		}
+
+		Assembler assembler = new Assembler(instTable);
+		assembler.stats = stats;
+		assembler.binaryFile = binaryFile;
+		assembler.listingFile = listingFile;
+		assembler.relax = relax;
+		SourceLexer lexer;
+		try {
+			if (stats != null)
+				stats.begin("load");
+			lexer = new SourceLexer("input.txt");
+			if (stats != null)
+				stats.begin(parallel ? "assemble" : "pass1");
+			if (parallel)
+				assembler.assembleParallel(lexer, ForkJoinPool.commonPool());
+			else
+				assembler.pass1(lexer);
+		} catch (IOException e) {
+			System.err.println("Input error : cannot assemble input.txt (" + e + ")");
+			System.exit(1);
+			return;
+		}
 		
+		if (stats != null)
+			stats.begin("symtab");
 		assembler.printSymbolTable("symtab_0000");
+		if (stats != null)
+			stats.begin("literaltab");
 		assembler.printLiteralTable("literaltab_0000");
-		assembler.pass2();
-		assembler.printObjectCode("output_0000");
+		if (parallel) {
+			if (stats != null)
+				stats.begin("objectCode");
+			assembler.printObjectCode("output_0000");
+		}
+		else {
+			if (stats != null)
+				stats.begin("pass2");
+			assembler.pass2("output_0000");
+		}
+
+		if (stats != null) {
+			stats.end();
+			stats.input = "input.txt";
+			stats.lines = lexer.getLineCount();
+			stats.collect(assembler);
+			stats.collect("symtab_0000");
+			stats.collect("literaltab_0000");
+			stats.commit();
+			stats.writeJson(statsFile);
+		}
+	}
 
+	/**
+	 * input 파일 하나를 어셈블하여 symbol table, literal table, object program 파일을 만든다.
+	 * 
+	 * @param inputFile      : input 파일 이름
+	 * @param symtabFile     : symbol table을 저장할 파일 이름
+	 * @param literaltabFile : literal table을 저장할 파일 이름
+	 * @param outputFile     : object program을 저장할 파일 이름
+	 * @return : 읽은 줄 수
+	 */
+	int assemble(String inputFile, String symtabFile, String literaltabFile, String outputFile) throws IOException {
+		SourceLexer lexer = new SourceLexer(inputFile);
+		pass1(lexer);
+		printSymbolTable(symtabFile);
+		printLiteralTable(literaltabFile);
+		pass2(outputFile);
+		return lexer.getLineCount();
 	}
 
 	/**
@@ -77,7 +218,7 @@ public class Assembler {
 	 * 
 	 * @param inputFile : input 파일 이름.
 	 */
-	private void loadInputFile(String inputFile) {
+	void loadInputFile(String inputFile) {
 		BufferedReader file = null;
 		try {
 			file = new BufferedReader(new FileReader(new File(inputFile)));
@@ -109,125 +250,170 @@ public class Assembler {
 	 * 
 	 * @param inputFile : input 파일 이름.
 	 */
-	private void pass1() {
-		String[] token;
-		int section = -1;
-
-		int index = 0;
-		locctr = 0;
-		int location;
-		String label;
-		String operator;
-		String tmp_operator;
-		String[] operand;
-		
-		for (String line : lineList) {
-			token = line.split("\t");
+	void pass1() {
+		beginPass1();
+		for (int i = 0; i < lineList.size(); i++) {
+			String line = lineList.get(i);
+			if (line.split("\t")[0].equals("."))
+				continue;
+			Token token = new Token(line);
+			token.line = i + 1;
+			macros.process(token, this::define);
+		}
+		macros.finish();
+		endPass1();
+	}
 
-			if (token[0].equals("."))
+	/**
+	 * pass1 과정을 수행한다. lineList 대신 SourceLexer가 나눈 영역으로부터 바로 Token을 만든다.
+	 *
+	 * @param lexer : input 파일을 읽고 있는 lexer
+	 */
+	void pass1(SourceLexer lexer) {
+		beginPass1();
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
 				continue;
-			if (token[1].equals("START") || token[1].equals("CSECT")) {
-				section++;
-				locctr = 0;
-				index = 0;
-				symtabList.add(new LabelTable());
-				literaltabList.add(new LabelTable());
-				TokenList.add(new TokenTable(symtabList.get(section), literaltabList.get(section), instTable));
-			}
-			TokenList.get(section).putToken(line); // tokenize
-
-			location = TokenList.get(section).getToken(index).location;
-			label = TokenList.get(section).getToken(index).label;
-
-			operator = TokenList.get(section).getToken(index).operator;
-			operand = new String[TokenList.get(section).getToken(index).operand.length];
-			operand = TokenList.get(section).getToken(index).operand;
-
-			/*
-			 * System.out.println("location : "+location);
-			 * System.out.println("label : "+label);
-			 * System.out.println("operator : "+operator);
-			 * System.out.println("operand :"+operand);
-			 * System.out.println("comment : "+comment);
-			 * System.out.println("nixbpe : "+nixbpe+"\n");
-			 */
-			if (label != "") // symtab
-				symtabList.get(section).putName(label, locctr); // add to symbol
-
-			if (operand[0] != "") // literaltab
-				if (operand[0].charAt(0) == '=')
-					if (literaltabList.get(section).search(operand[0]) == -1) {
-						literaltabList.get(section).putName(operand[0], -1);
-					}
-			// System.out.println("THE : "+instTable.instMap.get("ADD").opcode);
-
-			// calculating next location
-			if (operator.charAt(0) == '+') {
-				locctr++;
-				TokenList.get(section).getToken(index).byteSize++;
-				tmp_operator = operator.substring(1);
-			} else {
-				tmp_operator = operator;
-			}
-			if (instTable.instMap.get(tmp_operator) != null) {
-				locctr += instTable.instMap.get(tmp_operator).format;
-				TokenList.get(section).getToken(index).byteSize += instTable.instMap.get(tmp_operator).format;
-				// instMap.get(TokenList.get(section).getToken(index).operator).opcode;
-			} else if (operator.equals("RESW")) {
-				locctr += 3 * Integer.parseInt(operand[0]);
-				TokenList.get(section).getToken(index).byteSize += 3 * Integer.parseInt(operand[0]);
-			} else if (operator.equals("RESB")) {
-				locctr += Integer.parseInt(operand[0]);
-				TokenList.get(section).getToken(index).byteSize += Integer.parseInt(operand[0]);
-			} else if (operator.equals("WORD")) {
-				locctr += 3;
-				TokenList.get(section).getToken(index).byteSize += 3;
-			} else if (operator.equals("BYTE")) {
-				if (operand[0].charAt(0) == 'X') {
-					locctr += (operand[0].length() - 3) / 2;
-					TokenList.get(section).getToken(index).byteSize += (operand[0].length() - 3) / 2;
-				} else {
-					
-					locctr += (operand[0].length() - 3);
-					TokenList.get(section).getToken(index).byteSize += (operand[0].length() - 3);
-				}
-			} else if (operator.equals("EQU")) {
-				if (operand[0].charAt(0) == '*') {}
-				else {
-					if (operand[0].contains("-")) {
-						StringTokenizer tmp= new StringTokenizer(operand[0], "-");
-						TokenList.get(section).getToken(index).location=symtabList.get(section).search(tmp.nextToken()) - symtabList.get(section).search(tmp.nextToken());
-						symtabList.get(section).modifyName(label, TokenList.get(section).getToken(index).location);
-					}
-				}
-				
-			} else if ((operator.equals("LTORG") || operator.equals("END"))) {
-				int more = 0;
-				for (int i = 0; i<literaltabList.get(section).label.size(); i++) {
-					if (literaltabList.get(section).locationList.get(i) == -1) {
-						literaltabList.get(section).modifyName(literaltabList.get(section).label.get(i), location+more);
-						if (literaltabList.get(section).label.get(i).charAt(1)=='X') {
-							locctr += (literaltabList.get(section).label.get(i).length()-4)/2;
-							more = (literaltabList.get(section).label.get(i).length()-4)/2;
-							TokenList.get(section).getToken(index).byteSize += more;
-						}
-						else if (literaltabList.get(section).label.get(i).charAt(1)=='C') {
-							locctr += (literaltabList.get(section).label.get(i).length()-4);
-							more = (literaltabList.get(section).label.get(i).length()-4);
-							TokenList.get(section).getToken(index).byteSize += more;
-						}
-						else {
-							locctr += 3;
-							more = (literaltabList.get(section).label.get(i).length()-1)*3;
-							TokenList.get(section).getToken(index).byteSize += more;
-						}
-					}
-				}
-			}
-			index++;
+			macros.process(newToken(lexer), this::define);
+		}
+		macros.finish();
+		endPass1();
+	}
+
+	/**
+	 * pass1과 pass2를 section 단위로 병렬 수행한다.
+	 * 
+	 * 1) 소스를 한 번 훑어 START, CSECT 줄의 위치로 section 경계를 찾는다.
+	 * 
+	 * 2) 각 section을 독립된 lexer와 TokenTable을 가진 작업으로 pool에 넘긴다. section 사이에 공유되는 상태는
+	 * 읽기 전용인 instTable 뿐이다.
+	 * 
+	 * 3) 결과는 소스 순서대로 symtabList, literaltabList, TokenList에 합치므로 순차 수행과 같은 출력이 나온다.
+	 * 
+	 * 첫 section 앞에서 정의한 매크로는 모든 section에서 사용할 수 있다. section 안에서 정의한 매크로는 그 section
+	 * 안에서만 사용할 수 있다.
+	 * 
+	 * @param lexer : input 파일을 읽고 있는 lexer
+	 * @param pool  : section 작업을 수행할 pool
+	 */
+	void assembleParallel(SourceLexer lexer, ForkJoinPool pool) {
+		ArrayList<Integer> bounds = sectionBounds(lexer);
+		defineMacros(lexer.section(0, bounds.get(0)));
+
+		ArrayList<ForkJoinTask<TokenTable>> tasks = new ArrayList<ForkJoinTask<TokenTable>>();
+		for (int i = 0; i + 1 < bounds.size(); i++) {
+			SourceLexer part = lexer.section(bounds.get(i), bounds.get(i + 1));
+			MacroProcessor local = macros.fork();
+			tasks.add(pool.submit(() -> assembleSection(part, local)));
+		}
+		for (ForkJoinTask<TokenTable> task : tasks) {
+			TokenTable table = task.join();
+			symtabList.add(table.symTab);
+			literaltabList.add(table.literalTab);
+			TokenList.add(table);
+		}
+		section = TokenList.size() - 1;
+	}
+
+	/**
+	 * 소스를 끝까지 훑어 section의 경계를 찾는다. START, CSECT 줄이 시작되는 offset들과 마지막으로 소스의 길이가
+	 * 들어 있으므로, i번째 section은 [bounds[i], bounds[i+1]) 구간이다.
+	 * 
+	 * @param lexer : 처음 위치에 있는 lexer
+	 * @return : section 경계 offset 목록
+	 */
+	static ArrayList<Integer> sectionBounds(SourceLexer lexer) {
+		ArrayList<Integer> bounds = new ArrayList<Integer>();
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
+				continue;
+			if (lexer.fieldEquals(SourceLexer.OPERATOR, "START") || lexer.fieldEquals(SourceLexer.OPERATOR, "CSECT"))
+				bounds.add(lexer.lineStart());
+		}
+		bounds.add(lexer.length());
+		return bounds;
+	}
+
+	/**
+	 * 첫 section 앞의 줄들에서 매크로 정의를 읽어 macros에 저장한다. section 밖이므로 매크로 정의가 아닌 줄은 버린다.
+	 * 
+	 * @param lexer : 첫 section 앞부분만 읽는 lexer
+	 */
+	void defineMacros(SourceLexer lexer) {
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
+				continue;
+			macros.process(new Token(lexer), token -> System.out.println("Section error : " + token.operator + " before START"));
+		}
+		macros.finish();
+	}
+
+	/**
+	 * section 하나에 대해 pass1과 pass2를 수행한다. 다른 section과 상태를 공유하지 않는다.
+	 * 
+	 * @param lexer  : section 하나만 읽는 lexer
+	 * @param macros : 이 section에서만 사용하는 매크로 processor (fork()로 만든 것)
+	 * @return : object code까지 만들어진 section의 TokenTable
+	 */
+	TokenTable assembleSection(SourceLexer lexer, MacroProcessor macros) {
+		TokenTable table = new TokenTable(new LabelTable(), new LabelTable(), instTable, listingFile != null);
+		while (lexer.nextLine()) {
+			if (lexer.isCommentLine())
+				continue;
+			macros.process(newToken(lexer), table::define);
+		}
+		macros.finish();
+		table.tokens.trimToSize();
+		if (relax)
+			table.relax();
+		for (int i = 0; i < table.size(); i++)
+			table.makeObjectCode(i);
+		return table;
+	}
+
+	/**
+	 * lexer의 현재 줄로 Token을 만든다. listing을 만들 때는 comment도 저장한다.
+	 */
+	private Token newToken(SourceLexer lexer) {
+		Token token = new Token(lexer);
+		if (listingFile != null)
+			token.comment = lexer.field(SourceLexer.COMMENT);
+		return token;
+	}
+
+	private void beginPass1() {
+		section = -1;
+	}
+
+	/**
+	 * pass1이 끝나면 더 이상 Token이 추가되지 않으므로 각 section의 여유 공간을 돌려준다. relax가 설정되어 있으면
+	 * section마다 format 4로 바꿀 명령어를 정한다.
+	 */
+	private void endPass1() {
+		for (TokenTable table : TokenList) {
+			table.tokens.trimToSize();
+			if (relax)
+				table.relax();
 		}
 	}
 
+	/**
+	 * pass1에서 한 줄(Token)을 처리한다. START, CSECT를 만나면 새 section을 만들고, 나머지는 해당 section의
+	 * TokenTable에 맡긴다.
+	 *
+	 * @param token : 분석된 한 줄
+	 */
+	private void define(Token token) {
+		if (token.kind == Directive.START || token.kind == Directive.CSECT) {
+			section++;
+			symtabList.add(new LabelTable());
+			literaltabList.add(new LabelTable());
+			TokenList.add(new TokenTable(symtabList.get(section), literaltabList.get(section), instTable,
+					listingFile != null));
+		}
+		TokenList.get(section).define(token);
+	}
+
 	/**
 	 * 작성된 SymbolTable들을 출력형태에 맞게 출력한다.
 	 * 
@@ -239,13 +425,8 @@ public class Assembler {
 		//literaltabList.get(section).modifyName(literaltabList.get(section).label.get(i)
 		try {
 			file = new PrintWriter(new FileWriter(new File(fileName)));
-			for (int i=0; i < symtabList.size(); i++) {
-				for (int j=0; j < symtabList.get(i).label.size(); j++) {
-					file.print(symtabList.get(i).label.get(j)+"\t");
-					file.print(Integer.toHexString(symtabList.get(i).locationList.get(j)).toUpperCase()+"\n");
-				}
-				file.println("");
-			}
+			for (int i=0; i < symtabList.size(); i++)
+				file.print(formatSymbolTable(symtabList.get(i)));
 			file.close();
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
@@ -264,18 +445,8 @@ public class Assembler {
 		//literaltabList.get(section).modifyName(literaltabList.get(section).label.get(i)
 		try {
 			file = new PrintWriter(new FileWriter(new File(fileName)));
-			for (int i=0; i < literaltabList.size(); i++) {
-				for (int j=0; j < literaltabList.get(i).label.size(); j++) {
-					if (literaltabList.get(i).label.get(j).charAt(1)!='C' && literaltabList.get(i).label.get(j).charAt(1)!='X') {
-						file.print(literaltabList.get(i).label.get(j).substring(1)+"\t");
-						file.print(Integer.toHexString(literaltabList.get(i).locationList.get(j)).toUpperCase()+"\n");
-					}
-					else {
-						file.print(literaltabList.get(i).label.get(j).substring(3, literaltabList.get(i).label.get(j).length()-1)+"\t");
-						file.print(Integer.toHexString(literaltabList.get(i).locationList.get(j)).toUpperCase()+"\n");
-					}
-				}
-			}
+			for (int i=0; i < literaltabList.size(); i++)
+				file.print(formatLiteralTable(literaltabList.get(i)));
 			file.close();
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
@@ -283,114 +454,109 @@ public class Assembler {
 		}
 	}
 
+	/**
+	 * section 하나의 SymbolTable을 출력형태의 문자열로 만든다. section 끝에는 빈 줄이 붙는다.
+	 * 
+	 * @param symtab : section의 symbol table
+	 * @return : 출력할 내용
+	 */
+	static String formatSymbolTable(LabelTable symtab) {
+		StringBuilder text = new StringBuilder();
+		for (int j=0; j < symtab.size(); j++) {
+			text.append(symtab.getName(j)).append('\t');
+			text.append(Integer.toHexString(symtab.getLocation(j)).toUpperCase()).append('\n');
+		}
+		text.append('\n');
+		return text.toString();
+	}
+
+	/**
+	 * section 하나의 LiteralTable을 출력형태의 문자열로 만든다.
+	 * 
+	 * @param literaltab : section의 literal table
+	 * @return : 출력할 내용
+	 */
+	static String formatLiteralTable(LabelTable literaltab) {
+		StringBuilder text = new StringBuilder();
+		for (int j=0; j < literaltab.size(); j++) {
+			String literal = literaltab.getName(j);
+			if (literal.charAt(1)!='C' && literal.charAt(1)!='X')
+				text.append(literal, 1, literal.length()).append('\t');
+			else
+				text.append(literal, 3, literal.length()-1).append('\t');
+			text.append(Integer.toHexString(literaltab.getLocation(j)).toUpperCase()).append('\n');
+		}
+		return text.toString();
+	}
+
 	/**
 	 * pass2 과정을 수행한다.
 	 * 
-	 * 1) 분석된 내용을 바탕으로 object code를 생성하여 codeList에 저장.
+	 * 1) 분석된 내용을 바탕으로 object code를 생성하여 section별 code 배열에 저장.
+	 * 
+	 * 출력하지 않고 모든 section의 Token을 남겨 두므로 pass2만 따로 측정할 때 사용한다. 출력까지 할 때는 pass2(fileName)을
+	 * 사용한다.
 	 */
-	private void pass2() {
-		// TODO Auto-generated method stub
-		locctr =0;
-		//
-		
+	void pass2() {
 		for (int section = 0; section <TokenList.size(); section++) {
-			for (int i = 0; i < TokenList.get(section).tokenList.size(); i++) {
+			for (int i = 0; i < TokenList.get(section).size(); i++) {
 				TokenList.get(section).makeObjectCode(i);
-				codeList.add(TokenList.get(section).getObjectCode(i));
 			}
-			System.out.print("\n");
 		}
 	}
 
 	/**
-	 * 작성된 codeList를 출력형태에 맞게 출력한다.
+	 * pass2 과정을 수행하면서 object program을 출력한다.
+	 * 
+	 * section 하나의 object code를 만들면 바로 그 section의 record를 파일에 쓰고 Token과 code를 버린다. 따라서
+	 * pass2 동안 Token이 차지하는 메모리는 section이 끝날 때마다 줄어들고, 앞 section의 출력은 뒤 section을 처리하는
+	 * 동안 이미 파일에 쓰여 있다.
 	 * 
 	 * @param fileName : 저장되는 파일 이름
 	 */
-	private void printObjectCode(String fileName) {
-		// TODO Auto-generated method stub
-		int cover =0;
-		
-		
-		PrintWriter file = null;
-		//literaltabList.get(section).modifyName(literaltabList.get(section).label.get(i)
-		try {
-			file = new PrintWriter(new FileWriter(new File(fileName)));
-			for (int i = 0; i < TokenList.size(); i++) {
-				
-				for (int j=0; j<TokenList.get(i).tokenList.size(); j++) {
-					if (TokenList.get(i).tokenList.get(j).objectCode!="") {
-						switch (TokenList.get(i).tokenList.get(j).record) {
-						case 'H':
-							file.print(TokenList.get(i).tokenList.get(0).objectCode);
-							file.println(String.format("%06X",TokenList.get(i).tokenList.get(0).location));
-							break;
-						case 'D':
-						case 'R':
-							file.print(TokenList.get(i).tokenList.get(j).objectCode+"\n");
-	                        break;
-						case 'T' :
-							if (cover > 0) {
-								cover--;
-								file.print(TokenList.get(i).tokenList.get(j).objectCode);
-							}
-							else {
-								int sum = TokenList.get(i).tokenList.get(j).byteSize;
-								int k=j+1;
-								int l=0;
-								while (k<TokenList.get(i).tokenList.size()) {
-									if (TokenList.get(i).tokenList.get(k).objectCode.equals("")) {//pass
-										k++;
-										l++;
-										continue;
-									}
-									if (sum + TokenList.get(i).tokenList.get(k).byteSize > 30) { //pass
-										k--;
-										break;
-									}
-									if (TokenList.get(i).tokenList.get(k).location + TokenList.get(i).tokenList.get(k).byteSize - TokenList.get(i).tokenList.get(j).location > 30) {
-										k--;
-										break;
-									}
-									if (TokenList.get(i).tokenList.get(k).operator.equals("LTORG")) {
-										k--;
-										break;
-									}
-									sum += TokenList.get(i).tokenList.get(k).byteSize;
-									k++;
-									cover++;
-								}
-								file.print("T");
-								file.print(String.format("%06X",TokenList.get(i).tokenList.get(j).location));
-								file.print(String.format("%02X", sum));
-								file.print(TokenList.get(i).tokenList.get(j).objectCode);
-								//cover = k - j - l;
-							}
-							if (cover ==0)
-								file.print("\n");
-							break;
-						}
-					}
-				}
-				for (int k=0; k<TokenList.get(i).modifTab.size(); k++) {
-					file.print("M");
-					file.print(String.format(("%06X"), TokenList.get(i).modifTab.get(k).location));
-					file.print(String.format(("%02X"), TokenList.get(i).modifTab.get(k).length));
-					file.print(TokenList.get(i).modifTab.get(k).sign);
-					file.print(TokenList.get(i).modifTab.get(k).operand);
-					file.print("\n");
+	void pass2(String fileName) {
+		writeObjectCode(fileName, true);
+	}
+
+	/**
+	 * 작성된 object code를 출력형태에 맞게 출력한다. 출력한 section의 Token은 버린다.
+	 * 
+	 * @param fileName : 저장되는 파일 이름
+	 */
+	void printObjectCode(String fileName) {
+		writeObjectCode(fileName, false);
+	}
+
+	/**
+	 * section 순서대로 (encode가 true이면 object code를 만든 뒤) record를 출력하고 section의 Token을 버린다.
+	 * binaryFile이 있으면 같은 내용을 binary 형식으로도 출력한다. listingFile이 있으면 Token마다 object code를
+	 * 만든 직후에 listing 한 줄을 출력하므로, comment도 출력한 section의 Token과 함께 버려진다.
+	 */
+	private void writeObjectCode(String fileName, boolean encode) {
+		try (ObjectWriter writer = new ObjectWriter(fileName);
+				BinaryObjectWriter binary = binaryFile != null ? new BinaryObjectWriter(binaryFile) : null;
+				ListingWriter listing = listingFile != null ? new ListingWriter(listingFile) : null) {
+			for (int section = 0; section < TokenList.size(); section++) {
+				TokenTable table = TokenList.get(section);
+				for (int i = 0; i < table.size(); i++) {
+					if (encode)
+						table.makeObjectCode(i);
+					if (listing != null)
+						listing.writeLine(table, i);
 				}
-				file.print("E");
-				if (i == 0)
-					file.print("000000");
-				file.print("\n\n");
-				
+				if (listing != null)
+					listing.endSection();
+				writer.writeSection(table, section == 0);
+				writer.flush();
+				if (binary != null)
+					binary.writeSection(table, section == 0);
+				table.release();
 			}
-			file.close();
+			if (stats != null)
+				stats.collect(writer);
 		} catch (IOException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-
 	}
 }
@@ -0,0 +1,284 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 어셈블 과정의 단계별 시간과 주요 연산 횟수를 모은다.
+ *
+ * 단계는 begin(), end()로 감싸며, 각 단계마다 경과 시간(wall), process 전체의 CPU 시간, 모든 thread가 할당한
+ * byte 수를 기록한다. 연산 횟수(읽은 줄, Token, symbol/literal 검색, instruction 검색, T/M record, 출력 byte)는
+ * 어셈블이 끝난 뒤 collect()로 각 section의 table과 ObjectWriter에서 모은다.
+ *
+ * 결과는 writeJson()으로 JSON 파일에 쓰고, 동시에 JFR event(sicxe.Phase, sicxe.Run)로도 남긴다. JFR event는
+ * 실행 중인 JFR recording이 있을 때만 기록된다. (예 : java -XX:StartFlightRecording=filename=run.jfr ...)
+ */
+public class AssemblerStats {
+
+	/** 단계 하나의 측정값 */
+	static class Phase {
+		String name;
+		long wallNanos;
+		long cpuNanos;
+		long allocatedBytes;
+	}
+
+	@Name("sicxe.Phase")
+	@Label("Assembler Phase")
+	@Category("SIC/XE Assembler")
+	@Description("어셈블 단계 하나의 수행")
+	static class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("CPU Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long cpuTime;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+
+	@Name("sicxe.Run")
+	@Label("Assembler Run")
+	@Category("SIC/XE Assembler")
+	@Description("어셈블 한 번의 연산 횟수 합계")
+	static class RunEvent extends Event {
+		@Label("Input") String input;
+		@Label("Lines") long lines;
+		@Label("Tokens") long tokens;
+		@Label("Symbol Lookups") long symbolLookups;
+		@Label("Symbol Misses") long symbolMisses;
+		@Label("Literal Lookups") long literalLookups;
+		@Label("Literal Misses") long literalMisses;
+		@Label("Instruction Lookups") long instLookups;
+		@Label("Instruction Misses") long instMisses;
+		@Label("Relaxed Instructions") long relaxed;
+		@Label("Relax Passes") long relaxPasses;
+		@Label("Text Records") long textRecords;
+		@Label("Modification Records") long modificationRecords;
+		@Label("Bytes Written") @DataAmount long bytesWritten;
+	}
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+	final ArrayList<Phase> phases = new ArrayList<Phase>();
+	private Phase current;
+	private PhaseEvent event;
+	private long startWall;
+	private long startCpu;
+	private long startAllocated;
+
+	String input = "";
+	long lines;
+	long tokens;
+	long symbolLookups;
+	long symbolMisses;
+	long literalLookups;
+	long literalMisses;
+	long instLookups;
+	long instMisses;
+	/** --relax로 format 4로 바꾼 명령어 수와 주소를 다시 정한 횟수 */
+	long relaxed;
+	long relaxPasses;
+	long textRecords;
+	long modificationRecords;
+	long bytesWritten;
+
+	/**
+	 * 단계 측정을 시작한다. 이전 단계가 끝나지 않았으면 먼저 끝낸다.
+	 *
+	 * @param name : 단계 이름 (pass1, pass2 등)
+	 */
+	public void begin(String name) {
+		if (current != null)
+			end();
+		current = new Phase();
+		current.name = name;
+		event = new PhaseEvent();
+		event.phase = name;
+		event.begin();
+		startAllocated = allocatedBytes();
+		startCpu = cpuNanos();
+		startWall = System.nanoTime();
+	}
+
+	/**
+	 * 진행 중인 단계의 측정을 끝내고 기록한다.
+	 */
+	public void end() {
+		if (current == null)
+			return;
+		current.wallNanos = System.nanoTime() - startWall;
+		current.cpuNanos = cpuNanos() - startCpu;
+		current.allocatedBytes = allocatedBytes() - startAllocated;
+		event.end();
+		if (event.shouldCommit()) {
+			event.cpuTime = current.cpuNanos;
+			event.allocated = current.allocatedBytes;
+			event.commit();
+		}
+		phases.add(current);
+		current = null;
+		event = null;
+	}
+
+	/**
+	 * 어셈블이 끝난 assembler의 section별 table에서 연산 횟수를 모은다.
+	 */
+	public void collect(Assembler assembler) {
+		for (TokenTable table : assembler.TokenList) {
+			tokens += table.size();
+			instLookups += table.instLookups;
+			instMisses += table.instMisses;
+			relaxed += table.promoted;
+			relaxPasses += table.relaxPasses;
+		}
+		for (LabelTable table : assembler.symtabList) {
+			symbolLookups += table.lookups;
+			symbolMisses += table.misses;
+		}
+		for (LabelTable table : assembler.literaltabList) {
+			literalLookups += table.lookups;
+			literalMisses += table.misses;
+		}
+	}
+
+	/**
+	 * object program 출력이 끝난 writer의 record 수와 출력 byte 수를 더한다.
+	 */
+	public void collect(ObjectWriter writer) {
+		textRecords += writer.textRecords;
+		modificationRecords += writer.modificationRecords;
+		bytesWritten += writer.getWritten();
+	}
+
+	/**
+	 * table 출력 등 ObjectWriter를 거치지 않고 만든 파일의 크기를 출력 byte 수에 더한다.
+	 */
+	public void collect(String fileName) {
+		bytesWritten += new File(fileName).length();
+	}
+
+	/**
+	 * 모은 연산 횟수를 JFR event로 남긴다.
+	 */
+	public void commit() {
+		RunEvent run = new RunEvent();
+		if (!run.shouldCommit())
+			return;
+		run.input = input;
+		run.lines = lines;
+		run.tokens = tokens;
+		run.symbolLookups = symbolLookups;
+		run.symbolMisses = symbolMisses;
+		run.literalLookups = literalLookups;
+		run.literalMisses = literalMisses;
+		run.instLookups = instLookups;
+		run.instMisses = instMisses;
+		run.relaxed = relaxed;
+		run.relaxPasses = relaxPasses;
+		run.textRecords = textRecords;
+		run.modificationRecords = modificationRecords;
+		run.bytesWritten = bytesWritten;
+		run.commit();
+	}
+
+	/**
+	 * 측정 결과를 JSON 파일로 저장한다.
+	 *
+	 * @param fileName : 저장되는 파일 이름
+	 */
+	public void writeJson(String fileName) {
+		try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+			out.println("{");
+			out.println("  \"input\": \"" + escape(input) + "\",");
+			out.println("  \"counters\": {");
+			out.println("    \"lines\": " + lines + ",");
+			out.println("    \"tokens\": " + tokens + ",");
+			out.println("    \"symbolLookups\": " + symbolLookups + ",");
+			out.println("    \"symbolMisses\": " + symbolMisses + ",");
+			out.println("    \"literalLookups\": " + literalLookups + ",");
+			out.println("    \"literalMisses\": " + literalMisses + ",");
+			out.println("    \"instLookups\": " + instLookups + ",");
+			out.println("    \"instMisses\": " + instMisses + ",");
+			out.println("    \"relaxed\": " + relaxed + ",");
+			out.println("    \"relaxPasses\": " + relaxPasses + ",");
+			out.println("    \"textRecords\": " + textRecords + ",");
+			out.println("    \"modificationRecords\": " + modificationRecords + ",");
+			out.println("    \"bytesWritten\": " + bytesWritten);
+			out.println("  },");
+			out.println("  \"phases\": [");
+			long wall = 0, cpu = 0, allocated = 0;
+			for (int i = 0; i < phases.size(); i++) {
+				Phase phase = phases.get(i);
+				wall += phase.wallNanos;
+				cpu += phase.cpuNanos;
+				allocated += phase.allocatedBytes;
+				out.println("    { \"name\": \"" + escape(phase.name) + "\", \"wallNanos\": " + phase.wallNanos
+						+ ", \"cpuNanos\": " + phase.cpuNanos + ", \"allocatedBytes\": " + phase.allocatedBytes + " }"
+						+ (i + 1 < phases.size() ? "," : ""));
+			}
+			out.println("  ],");
+			out.println("  \"total\": { \"wallNanos\": " + wall + ", \"cpuNanos\": " + cpu + ", \"allocatedBytes\": "
+					+ allocated + " }");
+			out.println("}");
+		} catch (IOException e) {
+			System.err.println("Stats error : cannot write " + fileName + " (" + e.getMessage() + ")");
+		}
+	}
+
+	private static String escape(String value) {
+		StringBuilder text = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				text.append('\\').append(c);
+			else if (c < 0x20)
+				text.append(String.format("\\u%04x", (int) c));
+			else
+				text.append(c);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * process 전체의 CPU 시간. 병렬 모드에서 pool thread가 사용한 시간도 포함된다. 지원하지 않는 JVM이면 현재
+	 * thread의 CPU 시간을 사용한다.
+	 */
+	private long cpuNanos() {
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			long time = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+			if (time >= 0)
+				return time;
+		}
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	/**
+	 * 살아 있는 모든 thread가 지금까지 할당한 byte 수의 합. 측정 중 종료된 thread의 할당량은 빠진다.
+	 */
+	private long allocatedBytes() {
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return 0;
+		long total = 0;
+		for (long bytes : ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if (bytes > 0)
+				total += bytes;
+		return total;
+	}
+}
@@ -0,0 +1,109 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 여러 input 파일을 한 번에 어셈블하는 batch 실행기. inst.data는 한 번만 읽어 모든 파일이 같은 InstTable을
+ * 공유하고, 파일들은 고정된 크기의 thread pool에서 동시에 어셈블된다.
+ *
+ * 사용법 : java BatchAssembler [-i inst.data] [-o 출력 디렉토리] [-j thread 수] 파일 또는 디렉토리...
+ *
+ * 디렉토리가 주어지면 그 안의 일반 파일을 모두 어셈블한다. input 파일 name에 대해 출력 디렉토리에
+ * symtab_name, literaltab_name, output_name 파일이 만들어진다. 다른 디렉토리에 같은 이름의 input 파일이 있으면
+ * 출력 파일이 겹치므로 아무것도 어셈블하지 않고 끝낸다. 마지막에 처리한 파일 수와 줄 수, 초당 처리량을 출력한다.
+ *
+ * INCLUDE 파일은 IncludeCache를 통해 모든 소스가 공유하므로, 여러 소스가 include하는 파일도 한 번만 읽는다.
+ */
+public class BatchAssembler {
+
+	public static void main(String[] args) throws Exception {
+		String instFile = "inst.data";
+		File outputDir = new File(".");
+		int threads = Runtime.getRuntime().availableProcessors();
+		ArrayList<File> sources = new ArrayList<File>();
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-i":
+				instFile = args[++i];
+				break;
+			case "-o":
+				outputDir = new File(args[++i]);
+				break;
+			case "-j":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			default:
+				addSources(new File(args[i]), sources);
+			}
+		}
+		if (sources.isEmpty()) {
+			System.err.println("usage : java BatchAssembler [-i inst.data] [-o dir] [-j threads] file|dir...");
+			return;
+		}
+		HashMap<String, File> names = new HashMap<String, File>();
+		for (File source : sources) {
+			File other = names.putIfAbsent(source.getName(), source);
+			if (other != null) {
+				System.err.println("duplicate input name : " + other + ", " + source);
+				return;
+			}
+		}
+		outputDir.mkdirs();
+
+		long start = System.nanoTime();
+		InstTable instTable = InstTable.load(instFile);
+		AtomicLong lines = new AtomicLong();
+		int failed = 0;
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (File source : sources) {
+			File dir = outputDir;
+			tasks.add(pool.submit(() -> {
+				String name = source.getName();
+				Assembler assembler = new Assembler(instTable);
+				lines.addAndGet(assembler.assemble(source.getPath(), new File(dir, "symtab_" + name).getPath(),
+						new File(dir, "literaltab_" + name).getPath(), new File(dir, "output_" + name).getPath()));
+				return null;
+			}));
+		}
+		for (int i = 0; i < tasks.size(); i++) {
+			try {
+				tasks.get(i).get();
+			} catch (Exception e) {
+				failed++;
+				System.err.println(sources.get(i) + " : " + e.getCause());
+			}
+		}
+		pool.shutdown();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int done = sources.size() - failed;
+		System.out.printf("files : %d (%d failed), lines : %d, time : %.3f s%n", done, failed, lines.get(), seconds);
+		System.out.printf("%.1f files/s, %.0f lines/s%n", done / seconds, lines.get() / seconds);
+		IncludeCache includes = IncludeCache.SHARED;
+		if (includes.loads.get() > 0)
+			System.out.printf("include files : %d loaded, %d reused%n", includes.loads.get(), includes.hits.get());
+	}
+
+	/**
+	 * 파일이면 그대로, 디렉토리면 그 안의 일반 파일들을 이름 순으로 목록에 추가한다.
+	 */
+	private static void addSources(File file, ArrayList<File> sources) {
+		if (file.isDirectory()) {
+			File[] children = file.listFiles(File::isFile);
+			if (children == null)
+				return;
+			Arrays.sort(children);
+			sources.addAll(Arrays.asList(children));
+		}
+		else
+			sources.add(file);
+	}
+}
@@ -0,0 +1,256 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * object program을 hex 문자열 대신 byte 그대로 저장하는 binary 형식으로 출력한다. LinkingLoader는 이 파일을
+ * memory-map 하여 파싱 없이 읽는다.
+ *
+ * 파일 형식 (int는 4 byte big-endian, name은 길이 1 byte + ASCII)
+ *
+ * <pre>
+ * 파일    : MAGIC("SXO1") section...
+ * section : int 크기(이 field 뒤 section 끝까지의 byte 수)
+ *           name 이름, int 길이, int 시작 주소(첫 section의 E record 주소, 없으면 -1)
+ *           int 개수, { name 이름, int 주소 }...         EXTDEF (D record)
+ *           int 개수, { name 이름 }...                   EXTREF (R record)
+ *           int 개수, { name 이름 }...                   relocation이 참조하는 symbol 이름
+ *           int 개수, { int 주소, int 길이, byte... }...  object code 구간 (T record)
+ *           int 개수, { int 주소, byte half byte 수, byte 부호('+', '-'), int 이름 번호 }...  (M record)
+ * </pre>
+ *
+ * 주소가 이어지는 T record는 하나의 구간으로 합친다. section 크기를 맨 앞에 두므로 loader의 pass1은 object code를
+ * 건너뛰고 다음 section으로 바로 이동할 수 있다. section은 writeEnd()에서 한 번에 출력한다.
+ */
+public class BinaryObjectWriter implements Closeable {
+	/** 파일의 처음 4 byte */
+	public static final byte[] MAGIC = { 'S', 'X', 'O', '1' };
+	/** 시작 주소가 없는 section의 시작 주소 값 */
+	public static final int NO_ENTRY = -1;
+
+	private final WritableByteChannel channel;
+
+	/* 작성 중인 section의 각 부분. writeEnd()에서 순서대로 이어 붙인다. */
+	private final Sink header = new Sink();
+	private final Sink defines = new Sink();
+	private final Sink refers = new Sink();
+	private final Sink names = new Sink();
+	private final Sink segments = new Sink();
+	private final Sink relocations = new Sink();
+	private int defineCount;
+	private int referCount;
+	private int segmentCount;
+	private int relocationCount;
+	/** relocation이 참조하는 이름. 같은 이름은 한 번만 저장한다. */
+	private LabelTable nameIndex = new LabelTable();
+	/** 마지막 구간의 길이 field 위치와 끝 주소. 다음 object code가 이어지면 그 구간을 늘린다. */
+	private int segmentLengthAt = -1;
+	private int segmentEnd;
+
+	/** 지금까지 출력한 byte 수 */
+	private long written;
+
+	/**
+	 * @param fileName : 저장되는 파일 이름
+	 */
+	public BinaryObjectWriter(String fileName) throws IOException {
+		this(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	public BinaryObjectWriter(WritableByteChannel channel) throws IOException {
+		this.channel = channel;
+		write(ByteBuffer.wrap(MAGIC));
+	}
+
+	/**
+	 * pass2가 끝난 section 하나를 출력한다. (ObjectWriter.writeSection()과 같은 내용)
+	 *
+	 * @param table : pass2가 끝난 section의 TokenTable
+	 * @param main  : 첫 번째 section이면 true
+	 */
+	public void writeSection(TokenTable table, boolean main) throws IOException {
+		Token token = new Token("");
+		for (int j = 0; j < table.size(); j++) {
+			table.tokens.load(j, token);
+			switch (token.record) {
+			case 'H':
+				writeHeader(table.symTab.getName(0), token.location);
+				break;
+			case 'D':
+				int[] locations = new int[token.operand.length];
+				for (int k = 0; k < locations.length; k++)
+					locations[k] = table.symTab.search(token.operand[k]);
+				writeDefine(token.operand, locations);
+				break;
+			case 'R':
+				writeRefer(token.operand);
+				break;
+			case 'T':
+				writeText(token.location, table.code, token.codeOffset, token.codeLength);
+				break;
+			}
+		}
+		for (Modification modif : table.modifTab)
+			writeModification(modif);
+		writeEnd(main);
+	}
+
+	/**
+	 * section을 시작한다. 시작 주소는 항상 0이다.
+	 */
+	public void writeHeader(String name, int length) {
+		header.putName(name);
+		header.putInt(length);
+	}
+
+	public void writeDefine(String[] names, int[] locations) {
+		for (int k = 0; k < names.length; k++) {
+			defines.putName(names[k]);
+			defines.putInt(locations[k]);
+		}
+		defineCount += names.length;
+	}
+
+	public void writeRefer(String[] names) {
+		for (String name : names)
+			refers.putName(name);
+		referCount += names.length;
+	}
+
+	/**
+	 * location부터 놓일 object code를 추가한다. 앞 구간의 끝과 이어지면 그 구간에 붙인다.
+	 */
+	public void writeText(int location, byte[] code, int offset, int length) {
+		if (length == 0)
+			return;
+		if (segmentLengthAt < 0 || location != segmentEnd) {
+			segments.putInt(location);
+			segmentLengthAt = segments.size;
+			segments.putInt(0);
+			segmentCount++;
+			segmentEnd = location;
+		}
+		segments.put(code, offset, length);
+		segmentEnd += length;
+		segments.setInt(segmentLengthAt, segments.getInt(segmentLengthAt) + length);
+	}
+
+	public void writeModification(Modification modif) {
+		int index = nameIndex.indexOf(modif.operand);
+		if (index < 0) {
+			nameIndex.putName(modif.operand, 0);
+			index = nameIndex.size() - 1;
+			names.putName(modif.operand);
+		}
+		relocations.putInt(modif.location);
+		relocations.put(modif.length);
+		relocations.put(modif.sign);
+		relocations.putInt(index);
+		relocationCount++;
+	}
+
+	/**
+	 * section을 끝내고 파일에 출력한다.
+	 *
+	 * @param main : 첫 번째 section이면 true. 시작 주소 0을 기록한다.
+	 */
+	public void writeEnd(boolean main) throws IOException {
+		writeEnd(main ? 0 : NO_ENTRY);
+	}
+
+	/**
+	 * @param entry : 시작 주소. 없으면 NO_ENTRY
+	 */
+	public void writeEnd(int entry) throws IOException {
+		header.putInt(entry);
+		int size = header.size + 4 + defines.size + 4 + refers.size + 4 + names.size + 4 + segments.size + 4
+				+ relocations.size;
+		ByteBuffer out = ByteBuffer.allocate(4 + size);
+		out.putInt(size);
+		out.put(header.data, 0, header.size);
+		out.putInt(defineCount).put(defines.data, 0, defines.size);
+		out.putInt(referCount).put(refers.data, 0, refers.size);
+		out.putInt(nameIndex.size()).put(names.data, 0, names.size);
+		out.putInt(segmentCount).put(segments.data, 0, segments.size);
+		out.putInt(relocationCount).put(relocations.data, 0, relocations.size);
+		out.flip();
+		write(out);
+
+		header.size = defines.size = refers.size = names.size = segments.size = relocations.size = 0;
+		defineCount = referCount = segmentCount = relocationCount = 0;
+		nameIndex = new LabelTable();
+		segmentLengthAt = -1;
+	}
+
+	/**
+	 * @return : 지금까지 출력한 byte 수
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			written += channel.write(buffer);
+	}
+
+	/**
+	 * 크기가 늘어나는 byte 배열
+	 */
+	private static class Sink {
+		byte[] data = new byte[256];
+		int size;
+
+		void put(int b) {
+			ensure(1);
+			data[size++] = (byte) b;
+		}
+
+		void put(byte[] src, int offset, int length) {
+			ensure(length);
+			System.arraycopy(src, offset, data, size, length);
+			size += length;
+		}
+
+		void putInt(int value) {
+			ensure(4);
+			setInt(size, value);
+			size += 4;
+		}
+
+		void setInt(int at, int value) {
+			data[at] = (byte) (value >>> 24);
+			data[at + 1] = (byte) (value >>> 16);
+			data[at + 2] = (byte) (value >>> 8);
+			data[at + 3] = (byte) value;
+		}
+
+		int getInt(int at) {
+			return (data[at] & 0xFF) << 24 | (data[at + 1] & 0xFF) << 16 | (data[at + 2] & 0xFF) << 8
+					| (data[at + 3] & 0xFF);
+		}
+
+		void putName(String name) {
+			int length = Math.min(name.length(), 255);
+			put(length);
+			for (int i = 0; i < length; i++)
+				put(name.charAt(i));
+		}
+
+		private void ensure(int extra) {
+			if (size + extra > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+		}
+	}
+}
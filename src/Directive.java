@@ -0,0 +1,75 @@
+/**
+ * assembler 지시어(directive)의 종류를 나타내는 번호들. Token을 만들 때 operator를 한 번 분류하여 Token.kind에
+ * 저장해 두면, pass1과 pass2는 문자열 비교 없이 번호로 분기할 수 있다.
+ */
+public final class Directive {
+	/** 지시어가 아닌 줄 (instruction 또는 빈 operator) */
+	public static final int NONE = 0;
+	public static final int START = 1;
+	public static final int CSECT = 2;
+	public static final int EXTDEF = 3;
+	public static final int EXTREF = 4;
+	public static final int RESW = 5;
+	public static final int RESB = 6;
+	public static final int WORD = 7;
+	public static final int BYTE = 8;
+	public static final int EQU = 9;
+	public static final int LTORG = 10;
+	public static final int END = 11;
+	/** 매크로 정의의 시작과 끝. MacroProcessor가 처리하며 pass1에는 전달되지 않는다. */
+	public static final int MACRO = 12;
+	public static final int MEND = 13;
+	/** 다른 파일의 내용을 그 자리에 넣는다. MacroProcessor가 처리한다. */
+	public static final int INCLUDE = 14;
+	/** base register(B)에 들어 있을 주소를 알려 주고 취소한다. object code는 없다. */
+	public static final int BASE = 15;
+	public static final int NOBASE = 16;
+
+	private Directive() {
+	}
+
+	/**
+	 * operator 문자열을 지시어 번호로 바꾼다.
+	 *
+	 * @param operator : Token의 operator
+	 * @return : 지시어 번호. 지시어가 아니면 NONE
+	 */
+	public static int kindOf(String operator) {
+		switch (operator) {
+		case "START": return START;
+		case "CSECT": return CSECT;
+		case "EXTDEF": return EXTDEF;
+		case "EXTREF": return EXTREF;
+		case "RESW": return RESW;
+		case "RESB": return RESB;
+		case "WORD": return WORD;
+		case "BYTE": return BYTE;
+		case "EQU": return EQU;
+		case "LTORG": return LTORG;
+		case "END": return END;
+		case "MACRO": return MACRO;
+		case "MEND": return MEND;
+		case "INCLUDE": return INCLUDE;
+		case "BASE": return BASE;
+		case "NOBASE": return NOBASE;
+		default: return NONE;
+		}
+	}
+
+	/**
+	 * register 이름을 register 번호로 바꾼다. register가 아니면 A와 같은 0을 돌려준다.
+	 */
+	public static int registerOf(String name) {
+		switch (name) {
+		case "X": return TokenTable.XReg;
+		case "L": return TokenTable.LReg;
+		case "B": return TokenTable.BReg;
+		case "S": return TokenTable.SReg;
+		case "T": return TokenTable.TReg;
+		case "F": return TokenTable.FReg;
+		case "PC": return TokenTable.PCReg;
+		case "SW": return TokenTable.SWReg;
+		default: return TokenTable.AReg;
+		}
+	}
+}
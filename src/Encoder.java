@@ -0,0 +1,72 @@
+/**
+ * 명령어의 object code를 만드는 방법(encoder)의 번호들. pass1에서 명령어의 형식과 첫 operand의 addressing
+ * mode로 한 번 골라 Token.encoder에 저장하고, nixbpe flag도 이때 정한다. pass2는 형식, byteSize, '#', '@'를
+ * 다시 확인하거나 flag를 고치지 않고, 번호에 해당하는 TokenTable의 작은 encode 함수 하나만 호출한다.
+ */
+public final class Encoder {
+	/** 명령어가 아닌 줄 (지시어 또는 빈 operator) */
+	public static final int NONE = 0;
+	public static final int FORMAT1 = 1;
+	/** opcode와 Token.registers의 register 번호 두 개 */
+	public static final int FORMAT2 = 2;
+	/**
+	 * 주소 operand를 PC relative 또는 base relative로 찾는 format 3 (simple, indirect, '#' 뒤의 symbol). n, i, x는
+	 * nixbpe에 있고 p, b는 pass2에서 displacement가 들어가는 쪽으로 정한다.
+	 */
+	public static final int FORMAT3 = 3;
+	/** '#'으로 시작하는 10진수 operand를 그대로 넣는 format 3 */
+	public static final int FORMAT3_IMMEDIATE = 4;
+	/** operand가 없는 format 3 (RSUB) */
+	public static final int FORMAT3_NO_OPERAND = 5;
+	/** 20 bit 주소를 넣고 M record를 남기는 format 4. 외부 symbol이면 주소는 0이다. */
+	public static final int FORMAT4 = 6;
+
+	private Encoder() {
+	}
+
+	/**
+	 * pass1에서 resolve가 끝난 token의 encoder를 고르고 token.nixbpe를 정한다.
+	 *
+	 * @param token : inst가 정해진 Token
+	 * @return : encoder 번호
+	 */
+	public static int select(Token token) {
+		int inst = token.inst;
+		token.nixbpe = 0;
+		if (inst == InstTable.NOT_INSTRUCTION)
+			return NONE;
+		int format = InstTable.formatOf(inst);
+		if (format == 1)
+			return FORMAT1;
+		if (format == 2)
+			return FORMAT2;
+
+		String first = token.operand[0];
+		char mode = first.isEmpty() ? 0 : first.charAt(0);
+		int flags = mode == '#' ? TokenTable.iFlag
+				: mode == '@' ? TokenTable.nFlag : TokenTable.nFlag | TokenTable.iFlag;
+		if (token.operand.length > 1 && token.operand[1].startsWith("X"))
+			flags |= TokenTable.xFlag;
+		if (format == 4) {
+			token.nixbpe = (char) (flags | TokenTable.eFlag);
+			return FORMAT4;
+		}
+		token.nixbpe = (char) flags;
+		if (mode == '#' && isNumber(first))
+			return FORMAT3_IMMEDIATE;
+		if (first.isEmpty() && InstTable.operandCountOf(inst) == 0)
+			return FORMAT3_NO_OPERAND;
+		token.nixbpe |= TokenTable.pFlag;
+		return FORMAT3;
+	}
+
+	/**
+	 * @return : '#' 뒤가 10진수이면 true. 아니면 '#' 뒤는 symbol이다.
+	 */
+	static boolean isNumber(String operand) {
+		if (operand.length() < 2)
+			return false;
+		char c = operand.charAt(1);
+		return c >= '0' && c <= '9' || c == '-';
+	}
+}
@@ -0,0 +1,410 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * EQU, WORD의 operand에 쓰이는 식. pass1에서 한 번 분석하여 후위(postfix) 형태의 int 배열로 저장하고, 이후에는
+ * 문자열을 다시 분석하지 않고 계산한다.
+ *
+ * 지원하는 식 : 10진 상수, symbol, 현재 주소 '*', 이항 + - * /, 단항 + -, 괄호
+ *
+ * 각 항은 절대값(absolute), 재배치(relocatable, section 안에서 정의된 주소), 외부 참조(EXTREF) 중 하나이다. + -
+ * 로만 연결된 symbol은 분석할 때 계수(coefficient)를 구해 두어, 계산 결과가 절대값인지 재배치 값인지와 어떤 외부
+ * symbol에 대해 M record가 필요한지를 알 수 있다. * /의 피연산자는 절대값이어야 하며, (A-B)/2 처럼 같은 section의
+ * 재배치 symbol이 짝을 이루어 상쇄되는 피연산자는 절대값이므로 쓸 수 있다. 외부 symbol은 * /의 피연산자에 쓸 수 없다.
+ */
+public class Expression {
+	/* 후위 코드. CONST, SYMBOL은 다음 칸에 값(상수, names의 번호)을 가진다. */
+	static final int CONST = 0;
+	static final int SYMBOL = 1;
+	static final int LOCATION = 2;
+	static final int ADD = 3;
+	static final int SUB = 4;
+	static final int MUL = 5;
+	static final int DIV = 6;
+	static final int NEG = 7;
+
+	/** 원래 식. 오류 메시지에 사용한다. */
+	final String text;
+	final int[] code;
+	/** 식에 나오는 symbol 이름 (중복 없음) */
+	final String[] names;
+	/** names와 같은 순서의 계수. +A-B 이면 A는 1, B는 -1 */
+	final int[] coefficients;
+	/** '*'(현재 주소)의 계수 */
+	final int locationCoefficient;
+	/**
+	 * * / 의 피연산자 중 상수가 아닌 것들의 계수. factor[0]은 '*'의 계수, factor[i+1]은 names[i]의 계수이며, 각
+	 * 피연산자의 재배치 항 계수의 합은 0이어야 한다.
+	 */
+	final int[][] factors;
+
+	/* 마지막 evaluate()의 결과 */
+	/** 재배치 항의 계수 합. 0이면 절대값, 1이면 재배치 값이다. */
+	int relocation;
+	/** 오류가 있으면 그 내용, 없으면 null */
+	String error;
+
+	private Expression(String text, int[] code, String[] names, int[] coefficients, int locationCoefficient,
+			int[][] factors) {
+		this.text = text;
+		this.code = code;
+		this.names = names;
+		this.coefficients = coefficients;
+		this.locationCoefficient = locationCoefficient;
+		this.factors = factors;
+	}
+
+	/**
+	 * 식을 분석하여 후위 형태로 만든다.
+	 *
+	 * @param text : 식 문자열
+	 * @return : 분석된 식
+	 * @throws IllegalArgumentException : 문법에 맞지 않는 식
+	 */
+	public static Expression compile(String text) {
+		Parser parser = new Parser(text);
+		parser.expression();
+		parser.skipSpace();
+		if (parser.pos != text.length())
+			throw new IllegalArgumentException("unexpected '" + text.charAt(parser.pos) + "' in " + text);
+		return parser.finish();
+	}
+
+	/**
+	 * 식의 값을 계산한다. symbol이 symTab에 있으면 그 주소(재배치 값 또는 absolutes에 표시된 절대값)를, externals에
+	 * 있으면 0을 사용한다. 결과의 종류는 relocation에, 오류는 error에 남는다.
+	 *
+	 * @param location  : '*'의 값
+	 * @param symTab    : section의 symbol table
+	 * @param externals : section의 EXTREF symbol들
+	 * @param absolutes : symTab에서 절대값인 symbol의 번호
+	 * @return : 식의 값
+	 */
+	public int evaluate(int location, LabelTable symTab, LabelTable externals, BitSet absolutes) {
+		error = null;
+		int[] values = new int[names.length];
+		/* names[i]의 종류. 0은 절대값, 1은 재배치 값, -1은 외부 symbol */
+		int[] kinds = new int[names.length];
+		relocation = locationCoefficient;
+		for (int i = 0; i < names.length; i++) {
+			int index = symTab.indexOf(names[i]);
+			if (index >= 0) {
+				values[i] = symTab.getLocation(index);
+				if (!absolutes.get(index)) {
+					relocation += coefficients[i];
+					kinds[i] = 1;
+				}
+			}
+			else if (externals.indexOf(names[i]) >= 0)
+				kinds[i] = -1;
+			else
+				error = "undefined symbol " + names[i];
+		}
+		for (int[] factor : factors) {
+			int sum = factor.length > 0 ? factor[0] : 0;
+			for (int i = 1; i < factor.length; i++) {
+				if (factor[i] == 0)
+					continue;
+				if (kinds[i - 1] < 0)
+					error = "external reference in * or /";
+				else
+					sum += kinds[i - 1] * factor[i];
+			}
+			if (sum != 0 && error == null)
+				error = "relocatable term in * or /";
+		}
+
+		int[] stack = new int[code.length];
+		int top = 0;
+		for (int pc = 0; pc < code.length; pc++) {
+			switch (code[pc]) {
+			case CONST:
+				stack[top++] = code[++pc];
+				break;
+			case SYMBOL:
+				stack[top++] = values[code[++pc]];
+				break;
+			case LOCATION:
+				stack[top++] = location;
+				break;
+			case NEG:
+				stack[top - 1] = -stack[top - 1];
+				break;
+			default:
+				int right = stack[--top];
+				int left = stack[top - 1];
+				switch (code[pc]) {
+				case ADD: left += right; break;
+				case SUB: left -= right; break;
+				case MUL: left *= right; break;
+				case DIV:
+					if (right == 0) {
+						error = "division by zero";
+						right = 1;
+					}
+					left /= right;
+					break;
+				}
+				stack[top - 1] = left;
+			}
+		}
+		if (error == null && relocation != 0 && relocation != 1)
+			error = "relocatable terms do not pair";
+		return stack[0];
+	}
+
+	/**
+	 * @return : 식의 모든 symbol이 symTab 또는 externals에 있으면 true
+	 */
+	boolean isDefined(LabelTable symTab, LabelTable externals) {
+		for (String name : names)
+			if (symTab.indexOf(name) < 0 && externals.indexOf(name) < 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return : names[i]가 externals에 있는 외부 symbol이면 true
+	 */
+	boolean isExternal(int i, LabelTable symTab, LabelTable externals) {
+		return symTab.indexOf(names[i]) < 0 && externals.indexOf(names[i]) >= 0;
+	}
+
+	/**
+	 * 재귀 하강 방식으로 식을 분석하면서 후위 코드와 symbol별 계수를 만든다.
+	 */
+	private static class Parser {
+		final String text;
+		int pos;
+
+		int[] code = new int[16];
+		int size;
+		String[] names = new String[4];
+		int nameCount;
+
+		/*
+		 * 분석 중인 부분식들의 선형 형태. 각 부분식은 상수(constant, symbol이 없을 때만 의미가 있음), symbol별
+		 * 계수, '*'의 계수를 가진다.
+		 */
+		long[] constants = new long[8];
+		int[][] forms = new int[8][];
+		boolean[] pure = new boolean[8];
+		int depth;
+		/* * / 의 피연산자 중 상수가 아닌 것들의 형태 */
+		int[][] factors = new int[2][];
+		int factorCount;
+
+		Parser(String text) {
+			this.text = text;
+		}
+
+		void expression() {
+			term();
+			for (skipSpace(); pos < text.length(); skipSpace()) {
+				char c = text.charAt(pos);
+				if (c != '+' && c != '-')
+					return;
+				pos++;
+				term();
+				emit(c == '+' ? ADD : SUB);
+			}
+		}
+
+		void term() {
+			factor();
+			for (skipSpace(); pos < text.length(); skipSpace()) {
+				char c = text.charAt(pos);
+				if (c != '*' && c != '/')
+					return;
+				pos++;
+				factor();
+				emit(c == '*' ? MUL : DIV);
+			}
+		}
+
+		void factor() {
+			skipSpace();
+			if (pos >= text.length())
+				throw new IllegalArgumentException("missing operand in " + text);
+			char c = text.charAt(pos);
+			if (c == '+') {
+				pos++;
+				factor();
+			}
+			else if (c == '-') {
+				pos++;
+				factor();
+				emit(NEG);
+			}
+			else if (c == '*') {
+				pos++;
+				emit(LOCATION);
+			}
+			else if (c == '(') {
+				pos++;
+				expression();
+				skipSpace();
+				if (pos >= text.length() || text.charAt(pos) != ')')
+					throw new IllegalArgumentException("missing ')' in " + text);
+				pos++;
+			}
+			else if (Character.isDigit(c)) {
+				int start = pos;
+				while (pos < text.length() && Character.isDigit(text.charAt(pos)))
+					pos++;
+				emitConstant(Integer.parseInt(text, start, pos, 10));
+			}
+			else if (isSymbolChar(c)) {
+				int start = pos;
+				while (pos < text.length() && isSymbolChar(text.charAt(pos)))
+					pos++;
+				emitSymbol(text.substring(start, pos));
+			}
+			else
+				throw new IllegalArgumentException("unexpected '" + c + "' in " + text);
+		}
+
+		void skipSpace() {
+			while (pos < text.length() && text.charAt(pos) == ' ')
+				pos++;
+		}
+
+		private static boolean isSymbolChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+		}
+
+		private void put(int value) {
+			if (size == code.length)
+				code = Arrays.copyOf(code, size * 2);
+			code[size++] = value;
+		}
+
+		private void push(long constant, int[] form, boolean isPure) {
+			if (depth == forms.length) {
+				constants = Arrays.copyOf(constants, depth * 2);
+				forms = Arrays.copyOf(forms, depth * 2);
+				pure = Arrays.copyOf(pure, depth * 2);
+			}
+			constants[depth] = constant;
+			forms[depth] = form;
+			pure[depth] = isPure;
+			depth++;
+		}
+
+		private void emitConstant(int value) {
+			put(CONST);
+			put(value);
+			push(value, null, true);
+		}
+
+		private void emitSymbol(String name) {
+			int index = 0;
+			while (index < nameCount && !names[index].equals(name))
+				index++;
+			if (index == nameCount) {
+				if (nameCount == names.length)
+					names = Arrays.copyOf(names, nameCount * 2);
+				names[nameCount++] = name.intern();
+			}
+			put(SYMBOL);
+			put(index);
+			int[] form = new int[index + 2];
+			form[index + 1] = 1;
+			push(0, form, false);
+		}
+
+		/**
+		 * 연산자를 후위 코드에 추가하고, 피연산자들의 선형 형태를 합친다. form[0]은 '*'의 계수, form[i+1]은 names[i]의
+		 * 계수이다.
+		 */
+		private void emit(int op) {
+			put(op);
+			if (op == LOCATION) {
+				push(0, new int[] { 1 }, false);
+				return;
+			}
+			if (op == NEG) {
+				constants[depth - 1] = -constants[depth - 1];
+				forms[depth - 1] = scale(forms[depth - 1], -1);
+				return;
+			}
+			depth--;
+			long right = constants[depth];
+			int[] rightForm = forms[depth];
+			boolean rightPure = pure[depth];
+			int top = depth - 1;
+			switch (op) {
+			case ADD:
+			case SUB:
+				int sign = op == ADD ? 1 : -1;
+				constants[top] += sign * right;
+				forms[top] = combine(forms[top], rightForm, sign);
+				pure[top] &= rightPure;
+				break;
+			case MUL:
+				if (pure[top] && rightPure)
+					constants[top] *= right;
+				else if (pure[top])
+					forms[top] = scale(rightForm, (int) constants[top]);
+				else if (rightPure)
+					forms[top] = scale(forms[top], (int) right);
+				else
+					forms[top] = addFactors(forms[top], rightForm);
+				pure[top] &= rightPure;
+				break;
+			case DIV:
+				if (pure[top] && rightPure) {
+					if (right != 0)
+						constants[top] /= right;
+				}
+				else
+					forms[top] = addFactors(forms[top], rightForm);
+				pure[top] &= rightPure;
+				break;
+			}
+		}
+
+		/**
+		 * 선형으로 합칠 수 없는 * / 의 두 피연산자 형태를 factors에 남긴다. 피연산자가 모두 절대값이어야 하므로 결과는
+		 * 재배치 항이 없는 형태(null)이다.
+		 */
+		private int[] addFactors(int[] left, int[] right) {
+			for (int[] form : new int[][] { left, right }) {
+				if (form == null)
+					continue;
+				if (factorCount == factors.length)
+					factors = Arrays.copyOf(factors, factorCount * 2);
+				factors[factorCount++] = form;
+			}
+			return null;
+		}
+
+		private static int[] scale(int[] form, int factor) {
+			if (form == null)
+				return null;
+			int[] result = new int[form.length];
+			for (int i = 0; i < form.length; i++)
+				result[i] = form[i] * factor;
+			return result;
+		}
+
+		private static int[] combine(int[] left, int[] right, int sign) {
+			if (right == null)
+				return left;
+			int[] result = Arrays.copyOf(left == null ? new int[0] : left, Math.max(left == null ? 0 : left.length,
+					right.length));
+			for (int i = 0; i < right.length; i++)
+				result[i] += sign * right[i];
+			return result;
+		}
+
+		Expression finish() {
+			int[] form = depth > 0 && forms[0] != null ? forms[0] : new int[0];
+			int[] coefficients = new int[nameCount];
+			for (int i = 0; i < nameCount; i++)
+				coefficients[i] = i + 1 < form.length ? form[i + 1] : 0;
+			return new Expression(text, Arrays.copyOf(code, size), Arrays.copyOf(names, nameCount), coefficients,
+					form.length > 0 ? form[0] : 0, Arrays.copyOf(factors, factorCount));
+		}
+	}
+}
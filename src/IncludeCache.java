@@ -0,0 +1,145 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INCLUDE 지시어로 읽는 파일을 한 번만 lexing 하여 fragment로 보관한다.
+ *
+ * fragment는 파일의 주석이 아닌 줄마다 label, operator, operand를 나눈 결과이며, 파일의 절대 경로를 key로 하여
+ * process 전체(SHARED)에서 공유된다. 사용할 때마다 파일의 수정 시각과 크기를 확인하고, 바뀌었으면 다시 읽는다.
+ * 따라서 같은 파일을 include하는 여러 section이나 BatchAssembler의 여러 소스는 파일을 다시 읽고 나누지 않고
+ * fragment로부터 Token만 새로 만든다.
+ *
+ * 여러 thread에서 동시에 사용할 수 있다.
+ */
+public class IncludeCache {
+	/** process 전체에서 공유하는 cache */
+	static final IncludeCache SHARED = new IncludeCache();
+
+	private final ConcurrentHashMap<Path, Fragment> fragments = new ConcurrentHashMap<Path, Fragment>();
+
+	/* 통계 */
+	final AtomicInteger hits = new AtomicInteger();
+	final AtomicInteger loads = new AtomicInteger();
+
+	/**
+	 * lexing이 끝난 include 파일 하나. 내용은 바뀌지 않으므로 여러 thread가 공유한다.
+	 */
+	static class Fragment {
+		final Path path;
+		final long modified;
+		final long size;
+		/** 파일 내용의 SHA-256 */
+		final byte[] hash;
+		final String[] labels;
+		final String[] operators;
+		/** Token은 operand 배열을 바꾸지 않으므로 Token마다 복사하지 않고 공유한다. */
+		final String[][] operands;
+		/** 이 파일 안의 INCLUDE가 가리키는 파일 이름 */
+		final String[] includes;
+
+		Fragment(Path path, long modified, long size, byte[] content) {
+			this.path = path;
+			this.modified = modified;
+			this.size = size;
+			this.hash = newDigest().digest(content);
+
+			ArrayList<String> labelList = new ArrayList<String>();
+			ArrayList<String> operatorList = new ArrayList<String>();
+			ArrayList<String[]> operandList = new ArrayList<String[]>();
+			ArrayList<String> includeList = new ArrayList<String>();
+			SourceLexer lexer = new SourceLexer(ByteBuffer.wrap(content));
+			while (lexer.nextLine()) {
+				if (lexer.isCommentLine())
+					continue;
+				labelList.add(lexer.field(SourceLexer.LABEL));
+				operatorList.add(lexer.field(SourceLexer.OPERATOR));
+				String[] operand = lexer.operands();
+				operandList.add(operand);
+				if (lexer.fieldEquals(SourceLexer.OPERATOR, "INCLUDE"))
+					includeList.add(operand[0]);
+			}
+			labels = labelList.toArray(new String[0]);
+			operators = operatorList.toArray(new String[0]);
+			operands = operandList.toArray(new String[0][]);
+			includes = includeList.toArray(new String[0]);
+		}
+
+		int size() {
+			return operators.length;
+		}
+
+		/**
+		 * @return : i번째 줄의 새 Token
+		 */
+		Token token(int i) {
+			return new Token(labels[i], operators[i], operands[i]);
+		}
+	}
+
+	/**
+	 * 파일의 fragment를 돌려준다. cache에 있고 파일이 바뀌지 않았으면 cache의 것을, 아니면 새로 읽은 것을 돌려준다.
+	 *
+	 * @param fileName : include할 파일 이름. 상대 경로는 현재 디렉토리 기준이다.
+	 */
+	public Fragment get(String fileName) throws IOException {
+		Path path = Paths.get(fileName).toAbsolutePath().normalize();
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		long modified = attributes.lastModifiedTime().toMillis();
+		long size = attributes.size();
+		Fragment fragment = fragments.get(path);
+		if (fragment != null && fragment.modified == modified && fragment.size == size) {
+			hits.incrementAndGet();
+			return fragment;
+		}
+		fragment = new Fragment(path, modified, size, Files.readAllBytes(path));
+		loads.incrementAndGet();
+		fragments.put(path, fragment);
+		return fragment;
+	}
+
+	/**
+	 * 파일과 그 파일이 include하는 파일들의 내용 hash를 digest에 넣는다. IncrementalAssembler의 cache key에
+	 * 사용한다. 읽을 수 없는 파일은 이름만 넣는다.
+	 */
+	public void update(MessageDigest digest, String fileName) {
+		update(digest, fileName, 0);
+	}
+
+	private void update(MessageDigest digest, String fileName, int depth) {
+		digest.update(fileName.getBytes());
+		if (depth >= MacroProcessor.MAX_DEPTH)
+			return;
+		try {
+			Fragment fragment = get(fileName);
+			digest.update(fragment.hash);
+			for (String include : fragment.includes)
+				update(digest, include, depth + 1);
+		} catch (IOException e) {
+			// 없는 파일은 어셈블할 때 오류로 보고된다.
+		}
+	}
+
+	/**
+	 * cache를 비운다.
+	 */
+	public void clear() {
+		fragments.clear();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
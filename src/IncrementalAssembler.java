@@ -0,0 +1,318 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * section 단위 cache를 이용하는 증분 어셈블러.
+ *
+ * section은 서로 독립적으로 어셈블되므로(외부 symbol은 M record로 남는다), section의 소스 내용과 inst.data가
+ * 같으면 결과도 같다. 각 section의 소스 byte, inst.data의 내용과 assembler의 class 파일(BUILD)로 SHA-256 key를 만들고, cache 디렉토리에
+ * 그 section의 symbol table, literal table 출력 내용과 E record를 제외한 object record를 저장한다.
+ * 다음 실행에서는 key가 같은 section을 cache에서 읽고, 바뀐 section만 다시 pass1, pass2를 수행한다.
+ * section이 INCLUDE하는 파일은 그 내용의 hash를 key에 넣는다.
+ *
+ * cache 파일은 읽거나 쓸 때마다 수정 시각을 갱신하며, 어셈블이 끝난 뒤 cache 파일이 maxEntries개보다 많으면
+ * 수정 시각이 오래된 것부터 지운다. 이번 실행에서 사용한 파일은 지우지 않는다.
+ *
+ * 사용법 : java IncrementalAssembler [-c cache 디렉토리] [-n 최대 cache 파일 수] [input 파일]
+ *
+ * 결과 파일은 Assembler와 같이 symtab_0000, literaltab_0000, output_0000 이다.
+ */
+public class IncrementalAssembler {
+	/** cache 파일 형식이 바뀌면 증가시킨다. key에 포함되므로 이전 형식의 cache는 자동으로 무시된다. */
+	private static final int VERSION = 4;
+	/** cache 디렉토리에 남겨둘 cache 파일 수의 기본값 */
+	static final int DEFAULT_MAX_ENTRIES = 4096;
+	/**
+	 * object code를 만드는 class들. 이 class들과 그 안의 class 파일 내용이 key에 들어가므로, 다시 빌드한 assembler가
+	 * 다른 object code를 만들면 이전 빌드의 cache는 자동으로 무시된다.
+	 */
+	private static final Class<?>[] BUILD = { Assembler.class, TokenTable.class, Token.class, TokenStore.class,
+			Modification.class, Encoder.class, Expression.class, Directive.class, LabelTable.class, InstTable.class,
+			Instruction.class, PrecompiledInstTable.class, MacroProcessor.class, IncludeCache.class, SourceLexer.class,
+			ObjectWriter.class, IncrementalAssembler.class };
+
+	private final InstTable instTable;
+	/** inst.data와 BUILD class 파일들의 hash */
+	private final byte[] buildDigest;
+	private final File cacheDir;
+	/** 어셈블이 끝난 뒤 cache 디렉토리에 남겨둘 최대 cache 파일 수 */
+	int maxEntries = DEFAULT_MAX_ENTRIES;
+
+	/* 마지막 assemble()의 통계 */
+	int hits;
+	int misses;
+	/** cache에서 읽은 section들을 처음 어셈블할 때 걸렸던 시간의 합 */
+	long savedNanos;
+	/** cache를 읽는 데 걸린 시간의 합 */
+	long loadNanos;
+	/** 다시 어셈블한 section들에 걸린 시간의 합 */
+	long assembleNanos;
+	/** 오래되어 지운 cache 파일 수 */
+	int evicted;
+
+	/**
+	 * @param instFile : instruction 명세 파일 이름
+	 * @param cacheDir : cache를 저장할 디렉토리. 없으면 만든다.
+	 */
+	public IncrementalAssembler(String instFile, File cacheDir) throws IOException {
+		this.instTable = InstTable.load(instFile);
+		MessageDigest digest = newDigest();
+		digest.update(Files.readAllBytes(new File(instFile).toPath()));
+		for (Class<?> type : BUILD)
+			updateClass(digest, type);
+		this.buildDigest = digest.digest();
+		this.cacheDir = cacheDir;
+		cacheDir.mkdirs();
+	}
+
+	public static void main(String[] args) throws IOException {
+		File cacheDir = new File(".asmcache");
+		int maxEntries = DEFAULT_MAX_ENTRIES;
+		String input = "input.txt";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-c"))
+				cacheDir = new File(args[++i]);
+			else if (args[i].equals("-n"))
+				maxEntries = Integer.parseInt(args[++i]);
+			else
+				input = args[i];
+		}
+		IncrementalAssembler assembler = new IncrementalAssembler("inst.data", cacheDir);
+		assembler.maxEntries = maxEntries;
+		assembler.assemble(input, "symtab_0000", "literaltab_0000", "output_0000");
+		System.out.printf("sections : %d (cache hit %d, assembled %d, evicted %d)%n", assembler.hits + assembler.misses,
+				assembler.hits, assembler.misses, assembler.evicted);
+		System.out.printf("assemble %.1f ms, cache load %.1f ms, saved about %.1f ms%n", assembler.assembleNanos / 1e6,
+				assembler.loadNanos / 1e6, (assembler.savedNanos - assembler.loadNanos) / 1e6);
+	}
+
+	/**
+	 * input 파일을 어셈블하여 symbol table, literal table, object program 파일을 만든다. 바뀌지 않은 section은
+	 * cache의 결과를 사용한다.
+	 */
+	public void assemble(String inputFile, String symtabFile, String literaltabFile, String outputFile)
+			throws IOException {
+		hits = 0;
+		misses = 0;
+		savedNanos = 0;
+		loadNanos = 0;
+		assembleNanos = 0;
+		evicted = 0;
+
+		SourceLexer lexer = new SourceLexer(inputFile);
+		ArrayList<Integer> bounds = Assembler.sectionBounds(lexer);
+		Assembler assembler = new Assembler(instTable);
+		// 첫 section 앞에서 정의한 매크로는 모든 section의 결과에 영향을 주므로 그 부분도 key에 넣는다.
+		assembler.defineMacros(lexer.section(0, bounds.get(0)));
+		boolean macros = assembler.macros.isActive();
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		HashSet<String> used = new HashSet<String>();
+		for (int i = 0; i + 1 < bounds.size(); i++) {
+			int start = bounds.get(i);
+			int end = bounds.get(i + 1);
+			MessageDigest digest = newDigest();
+			digest.update((byte) VERSION);
+			digest.update(buildDigest);
+			if (macros) {
+				lexer.update(digest, 0, bounds.get(0));
+				updateIncludes(digest, lexer.section(0, bounds.get(0)));
+			}
+			lexer.update(digest, start, end);
+			updateIncludes(digest, lexer.section(start, end));
+			File file = new File(cacheDir, toHex(digest.digest()));
+			used.add(file.getName());
+
+			long begin = System.nanoTime();
+			Entry entry = file.isFile() ? Entry.read(file) : null;
+			if (entry != null) {
+				hits++;
+				loadNanos += System.nanoTime() - begin;
+				savedNanos += entry.nanos;
+				file.setLastModified(System.currentTimeMillis());
+			}
+			else {
+				TokenTable table = assembler.assembleSection(lexer.section(start, end), assembler.macros.fork());
+				entry = Entry.of(table);
+				entry.nanos = System.nanoTime() - begin;
+				assembleNanos += entry.nanos;
+				misses++;
+				entry.write(file);
+			}
+			entries.add(entry);
+		}
+
+		try (OutputStream symtab = new BufferedOutputStream(new FileOutputStream(symtabFile));
+				OutputStream literaltab = new BufferedOutputStream(new FileOutputStream(literaltabFile));
+				ObjectWriter object = new ObjectWriter(outputFile)) {
+			for (int i = 0; i < entries.size(); i++) {
+				Entry entry = entries.get(i);
+				symtab.write(entry.symtab);
+				literaltab.write(entry.literaltab);
+				object.writeRaw(entry.records);
+				object.writeEnd(i == 0);
+			}
+		}
+		evict(used);
+	}
+
+	/**
+	 * cache 파일이 maxEntries개보다 많으면 used에 없는 파일을 수정 시각이 오래된 것부터 지운다. 쓰다가 중단되어
+	 * 1분 넘게 남아 있는 임시 파일도 지운다. (다른 실행이 쓰고 있는 임시 파일은 지우지 않는다)
+	 */
+	private void evict(Set<String> used) {
+		File[] files = cacheDir.listFiles();
+		if (files == null)
+			return;
+		ArrayList<File> old = new ArrayList<File>();
+		int count = 0;
+		for (File file : files) {
+			String name = file.getName();
+			if (name.startsWith("section") && name.endsWith(".tmp")
+					&& file.lastModified() < System.currentTimeMillis() - 60_000)
+				file.delete();
+			else if (name.length() == 64 && file.isFile()) {
+				count++;
+				if (!used.contains(name))
+					old.add(file);
+			}
+		}
+		old.sort(Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < old.size() && count > maxEntries; i++) {
+			if (old.get(i).delete()) {
+				count--;
+				evicted++;
+			}
+		}
+	}
+
+	/**
+	 * lexer가 읽는 구간의 INCLUDE 줄이 가리키는 파일들의 내용 hash를 digest에 넣는다.
+	 */
+	private static void updateIncludes(MessageDigest digest, SourceLexer lexer) {
+		while (lexer.nextLine()) {
+			if (!lexer.isCommentLine() && lexer.fieldEquals(SourceLexer.OPERATOR, "INCLUDE"))
+				IncludeCache.SHARED.update(digest, lexer.operands()[0]);
+		}
+	}
+
+	/**
+	 * type과 그 안에 선언된 class들의 class 파일 내용을 digest에 넣는다. class 파일을 읽을 수 없으면 이름만 넣는다.
+	 */
+	private static void updateClass(MessageDigest digest, Class<?> type) throws IOException {
+		digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+		try (InputStream in = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+			if (in != null)
+				digest.update(in.readAllBytes());
+		}
+		for (Class<?> inner : type.getDeclaredClasses())
+			updateClass(digest, inner);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return hex.toString();
+	}
+
+	/**
+	 * cache에 저장되는 section 하나의 결과.
+	 */
+	static class Entry {
+		/** 처음 어셈블할 때 걸린 시간(ns) */
+		long nanos;
+		/** symbol table 출력 내용 */
+		byte[] symtab;
+		/** literal table 출력 내용 */
+		byte[] literaltab;
+		/** E record를 제외한 H, D, R, T, M record */
+		byte[] records;
+
+		static Entry of(TokenTable table) throws IOException {
+			Entry entry = new Entry();
+			entry.symtab = Assembler.formatSymbolTable(table.symTab).getBytes(StandardCharsets.UTF_8);
+			entry.literaltab = Assembler.formatLiteralTable(table.literalTab).getBytes(StandardCharsets.UTF_8);
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			try (ObjectWriter writer = new ObjectWriter(Channels.newChannel(records))) {
+				writer.writeRecords(table);
+			}
+			entry.records = records.toByteArray();
+			return entry;
+		}
+
+		/**
+		 * cache 파일을 읽는다. 파일이 손상되었으면(길이가 파일 크기와 맞지 않거나 뒤에 남는 내용이 있으면) null을
+		 * 리턴하여 다시 어셈블하게 한다.
+		 */
+		static Entry read(File file) {
+			long limit = file.length();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				Entry entry = new Entry();
+				entry.nanos = in.readLong();
+				entry.symtab = readBytes(in, limit);
+				entry.literaltab = readBytes(in, limit);
+				entry.records = readBytes(in, limit);
+				if (in.read() != -1)
+					throw new IOException("trailing data in " + file);
+				return entry;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * cache 파일을 쓴다. 다른 실행이 읽는 도중 내용이 바뀌지 않도록 임시 파일에 쓴 뒤 이름을 바꾼다.
+		 */
+		void write(File file) throws IOException {
+			File tmp = File.createTempFile("section", ".tmp", file.getParentFile());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				out.writeLong(nanos);
+				writeBytes(out, symtab);
+				writeBytes(out, literaltab);
+				writeBytes(out, records);
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private static byte[] readBytes(DataInputStream in, long limit) throws IOException {
+			int length = in.readInt();
+			if (length < 0 || length > limit)
+				throw new IOException("invalid length " + length);
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return bytes;
+		}
+
+		private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+}
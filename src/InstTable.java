@@ -3,18 +3,55 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
 
 /**
  * 모든 instruction의 정보를 관리하는 클래스. instruction data들을 저장한다 또한 instruction 관련 연산,
  * 예를 들면 목록을 구축하는 함수, 관련 정보를 제공하는 함수 등을 제공 한다.
+ * 
+ * 생성이 끝난 뒤에는 내용이 바뀌지 않으므로 여러 Assembler(thread)가 하나의 인스턴스를 공유할 수 있다.
+ *
+ * load()는 inst.data가 InstTableGenerator로 만들어 둔 PrecompiledInstTable과 같은 내용이면(길이와 CRC32가
+ * 같으면) 파일을 파싱하거나 hash 상수를 찾지 않고 미리 만든 값으로 table을 만든다. 다르면 파일을 읽는다.
  */
 public class InstTable {
 	/**
 	 * inst.data 파일을 불러와 저장하는 공간. 명령어의 이름을 집어넣으면 해당하는 Instruction의 정보들을 리턴할 수 있다.
 	 */
-	HashMap<String, Instruction> instMap;
+	final Map<String, Instruction> instMap;
+
+	/* resolve()가 돌려주는 descriptor의 bit 배치 : opcode(8) | format(4) | 피연산자 개수(3) | extended(1) */
+	public static final int DESC_OPCODE_SHIFT = 8;
+	public static final int DESC_FORMAT_SHIFT = 4;
+	public static final int DESC_OPERAND_SHIFT = 1;
+	public static final int DESC_EXTENDED = 1;
+	/** instruction이 아닐 때 resolve()가 돌려주는 값 */
+	public static final int NOT_INSTRUCTION = -1;
+
+	/* 한 글자당 7bit 씩 long에 채워 넣으므로 최대 9글자까지 String hashing 없이 찾을 수 있다. */
+	private static final int PACK_BITS = 7;
+	private static final int PACK_MAX_LENGTH = 9;
+
+	/** perfect hash의 곱셈 상수를 뽑는 난수의 seed. 같은 inst.data이면 항상 같은 table이 만들어진다. */
+	private static final long HASH_SEED = 0x5DEECE66DL;
+	/** table 크기마다 시도하는 곱셈 상수의 수 */
+	private static final int HASH_ATTEMPTS = 4096;
+
+	/** inst.data로부터 만들어진 perfect hash table의 key (pack된 mnemonic). 0은 빈 칸이다. */
+	private long[] packedKeys;
+	/** packedKeys와 같은 위치에 저장된 descriptor */
+	private int[] descriptors;
+	/** perfect hash에 사용되는 곱셈 상수 */
+	private long multiplier;
+	/** perfect hash에 사용되는 shift 값 (64 - log2(table 크기)) */
+	private int shift;
+
 	/**
 	 * 클래스 초기화. 파싱을 동시에 처리한다.
 	 * 
@@ -22,14 +59,60 @@ public class InstTable {
 	 */
 
 	public InstTable(String instFile) {
-		instMap = new HashMap<String, Instruction>();
-		openFile(instFile);
-		instMap.get(null);
+		HashMap<String, Instruction> map = new HashMap<String, Instruction>();
+		openFile(instFile, map);
+		instMap = Collections.unmodifiableMap(map);
+		buildPerfectHash();
+	}
+
+	/**
+	 * PrecompiledInstTable의 내용으로 table을 만든다. hash 상수도 미리 찾아 둔 값을 사용한다.
+	 */
+	private InstTable() {
+		HashMap<String, Instruction> map = new HashMap<String, Instruction>();
+		for (int i = 0; i < PrecompiledInstTable.NAMES.length; i++)
+			map.put(PrecompiledInstTable.NAMES[i], new Instruction(PrecompiledInstTable.NAMES[i],
+					PrecompiledInstTable.OPCODES[i], PrecompiledInstTable.FORMATS[i], PrecompiledInstTable.OPERANDS[i]));
+		instMap = Collections.unmodifiableMap(map);
+		if (!fillPerfectHash(PrecompiledInstTable.MULTIPLIER, PrecompiledInstTable.BITS))
+			buildPerfectHash();
+	}
+
+	/**
+	 * instFile이 PrecompiledInstTable을 만들 때와 같은 내용이면 미리 만든 table을, 아니면 파일을 읽어 만든 table을
+	 * 돌려준다.
+	 * 
+	 * @param instFile : instuction에 대한 명세가 저장된 파일 이름
+	 */
+	public static InstTable load(String instFile) {
+		if (isPrecompiled(instFile))
+			return new InstTable();
+		return new InstTable(instFile);
+	}
+
+	/**
+	 * @return : instFile의 길이와 CRC32가 PrecompiledInstTable에 기록된 값과 같으면 true
+	 */
+	static boolean isPrecompiled(String instFile) {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(Paths.get(instFile));
+		} catch (IOException e) {
+			return false;
+		}
+		return data.length == PrecompiledInstTable.LENGTH && checksum(data) == PrecompiledInstTable.CHECKSUM;
 	}
+
+	static long checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return crc.getValue();
+	}
+
 	/**
-	 * 입력받은 이름의 파일을 열고 해당 내용을 파싱하여 instMap에 저장한다.
+	 * 입력받은 이름의 파일을 열고 해당 내용을 파싱하여 map에 저장한다.
 	 */
-	public void openFile(String fileName) {
+	private static void openFile(String fileName, Map<String, Instruction> map) {
 		// ...
 		BufferedReader file = null;
 		try {
@@ -43,7 +126,7 @@ public class InstTable {
 		try {
 			while ((line = file.readLine()) != null){
 				Instruction inst = new Instruction(line);
-				instMap.put(inst.instruction, inst);
+				map.put(inst.instruction, inst);
 			}
 			file.close();
 			
@@ -54,6 +137,163 @@ public class InstTable {
 	
 	}
 
+	/**
+	 * instMap의 내용으로부터 충돌이 없는 hash table을 만든다. 고정된 seed의 SplittableRandom에서 서로 독립인 홀수
+	 * 곱셈 상수를 차례로 뽑아 모든 mnemonic이 서로 다른 칸에 들어가는 상수를 찾고, 찾지 못하면 table 크기를 두 배로
+	 * 늘려 다시 시도한다. table은 mnemonic 수의 2배 이상인 2의 거듭제곱 중, HASH_ATTEMPTS번 안에 찾을 가능성이 있는
+	 * 가장 작은 크기부터 시작한다. (inst.data의 59개 mnemonic이면 256칸)
+	 */
+	private void buildPerfectHash() {
+		long[] keys = new long[instMap.size()];
+		int n = 0;
+		for (String name : instMap.keySet()) {
+			long key = pack(name, 0);
+			if (key != 0)
+				keys[n++] = key;
+		}
+		int bits = 1;
+		while ((1 << bits) < n * 2 || successRate(n, 1 << bits) * HASH_ATTEMPTS < 1)
+			bits++;
+		SplittableRandom random = new SplittableRandom(HASH_SEED);
+		while (true) {
+			// 칸마다 마지막으로 사용한 시도 번호를 기록하여, 시도할 때마다 table을 비우지 않는다.
+			int[] used = new int[1 << bits];
+			for (int attempt = 1; attempt <= HASH_ATTEMPTS; attempt++) {
+				long mult = random.nextLong() | 1;
+				int i;
+				for (i = 0; i < n; i++) {
+					int slot = (int) ((keys[i] * mult) >>> (64 - bits));
+					if (used[slot] == attempt)
+						break;
+					used[slot] = attempt;
+				}
+				if (i == n && fillPerfectHash(mult, bits))
+					return;
+			}
+			bits++;
+		}
+	}
+
+	/**
+	 * @return : 임의의 곱셈 상수로 n개의 key가 size칸에 충돌 없이 들어갈 확률의 근사값
+	 */
+	private static double successRate(int n, int size) {
+		double rate = 1;
+		for (int i = 1; i < n; i++)
+			rate *= 1 - (double) i / size;
+		return rate;
+	}
+
+	/**
+	 * 주어진 곱셈 상수와 table 크기(2^bits)로 hash table을 채운다.
+	 * 
+	 * @return : 모든 mnemonic이 서로 다른 칸에 들어가면 true. false이면 table은 바뀌지 않는다.
+	 */
+	private boolean fillPerfectHash(long mult, int bits) {
+		int size = 1 << bits;
+		long[] table = new long[size];
+		int[] values = new int[size];
+		for (Instruction inst : instMap.values()) {
+			long key = pack(inst.instruction, 0);
+			if (key == 0)
+				continue;
+			int slot = (int) ((key * mult) >>> (64 - bits));
+			if (table[slot] != 0)
+				return false;
+			table[slot] = key;
+			values[slot] = describe(inst, false);
+		}
+		packedKeys = table;
+		descriptors = values;
+		multiplier = mult;
+		shift = 64 - bits;
+		return true;
+	}
+
+	/**
+	 * mnemonic을 한 글자당 7bit 씩 long 값으로 변환한다.
+	 *
+	 * @param name  : 변환할 문자열
+	 * @param start : 변환을 시작할 위치 ('+'를 건너뛸 때 1)
+	 * @return : 변환된 값. 변환할 수 없는 문자열(너무 길거나 ASCII가 아닌 경우)이면 0
+	 */
+	private static long pack(String name, int start) {
+		int length = name.length() - start;
+		if (length <= 0 || length > PACK_MAX_LENGTH)
+			return 0;
+		long key = 0;
+		for (int i = start; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == 0 || c > 0x7F)
+				return 0;
+			key = (key << PACK_BITS) | c;
+		}
+		return key;
+	}
+
+	private static int describe(Instruction inst, boolean extended) {
+		int format = inst.format + (extended ? 1 : 0);
+		return (inst.opcode << DESC_OPCODE_SHIFT) | (format << DESC_FORMAT_SHIFT)
+				| (inst.numberOfOperand << DESC_OPERAND_SHIFT) | (extended ? DESC_EXTENDED : 0);
+	}
+
+	/**
+	 * operator를 instruction descriptor로 변환한다. '+'로 시작하면 format 4로 취급한다. pass1에서 한 줄당 한 번만
+	 * 호출하고, 결과는 Token에 저장하여 pass2에서 사용한다.
+	 *
+	 * @param operator : 소스 코드의 operator 문자열
+	 * @return : descriptor. instruction이 아니면 NOT_INSTRUCTION
+	 */
+	public int resolve(String operator) {
+		if (operator == null || operator.isEmpty())
+			return NOT_INSTRUCTION;
+		boolean extended = operator.charAt(0) == '+';
+		int start = extended ? 1 : 0;
+		int desc;
+		long key = pack(operator, start);
+		if (key != 0) {
+			int slot = (int) ((key * multiplier) >>> shift);
+			if (packedKeys[slot] != key)
+				return NOT_INSTRUCTION;
+			desc = descriptors[slot];
+		}
+		else {
+			Instruction inst = instMap.get(extended ? operator.substring(1) : operator);
+			if (inst == null)
+				return NOT_INSTRUCTION;
+			desc = describe(inst, false);
+		}
+		if (extended)
+			desc = (desc + (1 << DESC_FORMAT_SHIFT)) | DESC_EXTENDED;
+		return desc;
+	}
+
+	/** InstTableGenerator가 기록하는 perfect hash 상수 */
+	long multiplier() {
+		return multiplier;
+	}
+
+	/** InstTableGenerator가 기록하는 table 크기의 log2 */
+	int bits() {
+		return 64 - shift;
+	}
+
+	public static int opcodeOf(int desc) {
+		return (desc >>> DESC_OPCODE_SHIFT) & 0xFF;
+	}
+
+	public static int formatOf(int desc) {
+		return (desc >>> DESC_FORMAT_SHIFT) & 0xF;
+	}
+
+	public static int operandCountOf(int desc) {
+		return (desc >>> DESC_OPERAND_SHIFT) & 0x7;
+	}
+
+	public static boolean isExtended(int desc) {
+		return (desc & DESC_EXTENDED) != 0;
+	}
+
 	// get, set, search 등의 함수는 자유 구현
 	public int getOpcode(String instruction) {
 		if (instruction == null)
@@ -84,48 +324,3 @@ public class InstTable {
 			return -2;
 	}
 }
-
-/**
- * 명령어 하나하나의 구체적인 정보는 Instruction클래스에 담긴다. instruction과 관련된 정보를 저장하고 기초적인 연산을
- * 수행한다.
- */
-class Instruction {
-
-	/*
-	 * 각자의 inst.data 파일에 맞게 저장하는 변수를 선언한다.
-	 * 
-	 * ex) String instruction; int opcode; int numberOfOperand; String comment;
-	 */
-	String instruction;
-	int opcode;
-	int numberOfOperand;
-	/** instruction이 몇 바이트 명령어인지 저장 */
-	int format;
-	
-
-	/**
-	 * 클래스를 선언하면서 일반문자열을 즉시 구조에 맞게 파싱한다.
-	 * 
-	 * @param line : instruction 명세파일로부터 한줄씩 가져온 문자열
-	 */
-	public Instruction(String line) {
-		parsing(line);
-	}
-
-	/**
-	 * 일반 문자열을 파싱하여 instruction 정보를 파악하고 저장한다.
-	 * 
-	 * @param line : instruction 명세파일로부터 한줄씩 가져온 문자열
-	 **/
-	public void parsing(String line) {
-		// TODO Auto-generated method stub
-		
-		StringTokenizer token= new StringTokenizer(line, "\t");
-		this.instruction = token.nextToken();
-		this.opcode = Integer.parseInt((token.nextToken()),16);
-		this.format = Integer.parseInt(token.nextToken()); 
-		this.numberOfOperand = Integer.parseInt(token.nextToken());
-	}
-
-
-}
@@ -0,0 +1,91 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * inst.data로부터 PrecompiledInstTable.java를 만든다. gradle build는 compile 전에 이 class로
+ * build/generated/sources/instTable에 새로 만들어 사용하며(generateInstTable), javac만으로 build할 때는 inst.data를
+ * 고친 뒤 직접 실행하여 src/PrecompiledInstTable.java를 다시 만든다.
+ *
+ * 사용법 : java InstTableGenerator [inst.data] [src/PrecompiledInstTable.java]
+ *
+ * 만들어진 class에는 instruction 목록, InstTable이 찾은 perfect hash 상수, 그리고 inst.data의 길이와 CRC32가
+ * 들어 있다. 실행 시 InstTable.load()는 길이와 CRC32가 같을 때만 이 값을 사용하므로, 다시 만드는 것을 잊어도
+ * 결과는 틀리지 않고 파일을 읽는 방식으로 돌아갈 뿐이다.
+ */
+public class InstTableGenerator {
+
+	public static void main(String[] args) throws IOException {
+		String instFile = args.length > 0 ? args[0] : "inst.data";
+		String outputFile = args.length > 1 ? args[1] : "src/PrecompiledInstTable.java";
+
+		ArrayList<Instruction> list = new ArrayList<Instruction>();
+		try (BufferedReader in = new BufferedReader(new FileReader(instFile))) {
+			String line;
+			while ((line = in.readLine()) != null)
+				list.add(new Instruction(line));
+		}
+		byte[] data = Files.readAllBytes(Paths.get(instFile));
+		InstTable table = new InstTable(instFile);
+
+		try (PrintWriter out = new PrintWriter(new FileWriter(outputFile, StandardCharsets.UTF_8))) {
+			out.println("/**");
+			out.println(" * InstTableGenerator가 " + instFile + "로부터 만든 instruction table. 직접 고치지 않는다.");
+			out.println(" */");
+			out.println("final class PrecompiledInstTable {");
+			out.println("\t/** 원본 파일의 길이와 CRC32 */");
+			out.println("\tstatic final int LENGTH = " + data.length + ";");
+			out.println("\tstatic final long CHECKSUM = 0x" + Long.toHexString(InstTable.checksum(data)).toUpperCase()
+					+ "L;");
+			out.println();
+			out.println("\t/** perfect hash의 곱셈 상수와 table 크기(2^BITS) */");
+			out.println("\tstatic final long MULTIPLIER = 0x" + Long.toHexString(table.multiplier()).toUpperCase() + "L;");
+			out.println("\tstatic final int BITS = " + table.bits() + ";");
+			out.println();
+			ArrayList<String> names = new ArrayList<String>(), opcodes = new ArrayList<String>(),
+					formats = new ArrayList<String>(), operands = new ArrayList<String>();
+			for (Instruction inst : list) {
+				names.add('"' + inst.instruction + '"');
+				opcodes.add("0x" + Integer.toHexString(inst.opcode).toUpperCase());
+				formats.add(Integer.toString(inst.format));
+				operands.add(Integer.toString(inst.numberOfOperand));
+			}
+			printArray(out, "String[] NAMES", names);
+			printArray(out, "int[] OPCODES", opcodes);
+			printArray(out, "int[] FORMATS", formats);
+			printArray(out, "int[] OPERANDS", operands);
+			out.println();
+			out.println("\tprivate PrecompiledInstTable() {");
+			out.println("\t}");
+			out.println("}");
+		}
+		System.out.println(outputFile + " : " + list.size() + " instructions");
+	}
+
+	/**
+	 * 배열 상수 선언을 한 줄이 100자를 넘지 않도록 나누어 출력한다.
+	 */
+	private static void printArray(PrintWriter out, String declaration, ArrayList<String> values) {
+		out.println("\tstatic final " + declaration + " = {");
+		StringBuilder line = new StringBuilder("\t\t\t");
+		for (int i = 0; i < values.size(); i++) {
+			String value = values.get(i) + (i + 1 < values.size() ? "," : "");
+			if (line.length() > 3 && line.length() + value.length() + 1 > 100) {
+				out.println(line);
+				line.setLength(0);
+				line.append("\t\t\t");
+			}
+			if (line.length() > 3)
+				line.append(' ');
+			line.append(value);
+		}
+		out.println(line);
+		out.println("\t};");
+	}
+}
@@ -0,0 +1,53 @@
+import java.util.StringTokenizer;
+
+/**
+ * 명령어 하나하나의 구체적인 정보는 Instruction클래스에 담긴다. instruction과 관련된 정보를 저장하고 기초적인 연산을
+ * 수행한다.
+ */
+class Instruction {
+
+	/*
+	 * 각자의 inst.data 파일에 맞게 저장하는 변수를 선언한다.
+	 * 
+	 * ex) String instruction; int opcode; int numberOfOperand; String comment;
+	 */
+	String instruction;
+	int opcode;
+	int numberOfOperand;
+	/** instruction이 몇 바이트 명령어인지 저장 */
+	int format;
+	
+
+	/**
+	 * 클래스를 선언하면서 일반문자열을 즉시 구조에 맞게 파싱한다.
+	 * 
+	 * @param line : instruction 명세파일로부터 한줄씩 가져온 문자열
+	 */
+	public Instruction(String line) {
+		parsing(line);
+	}
+
+	Instruction(String instruction, int opcode, int format, int numberOfOperand) {
+		this.instruction = instruction;
+		this.opcode = opcode;
+		this.format = format;
+		this.numberOfOperand = numberOfOperand;
+	}
+
+	/**
+	 * 일반 문자열을 파싱하여 instruction 정보를 파악하고 저장한다.
+	 * 
+	 * @param line : instruction 명세파일로부터 한줄씩 가져온 문자열
+	 **/
+	public void parsing(String line) {
+		// TODO Auto-generated method stub
+		
+		StringTokenizer token= new StringTokenizer(line, "\t");
+		this.instruction = token.nextToken();
+		this.opcode = Integer.parseInt((token.nextToken()),16);
+		this.format = Integer.parseInt(token.nextToken()); 
+		this.numberOfOperand = Integer.parseInt(token.nextToken());
+	}
+
+
+}
@@ -1,62 +1,198 @@
-import java.util.ArrayList;
-import java.lang.StackTraceElement;
+import java.util.Arrays;
 
 /**
  * symbol, literal과 관련된 데이터와 연산을 소유한다. section 별로 하나씩 인스턴스를 할당한다.
+ *
+ * label은 정의된 순서대로 names/locations 배열에 저장되고, 검색은 open addressing 방식의 hash index(slots)를 통해
+ * 이루어진다. 따라서 출력은 정의 순서를 유지하면서 검색, 추가, 변경은 평균 O(1)에 수행된다.
  */
 public class LabelTable {
-	ArrayList<String> label;
-	ArrayList<Integer> locationList;
+	/** 초기 table 크기. 2의 거듭제곱이어야 한다. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** 정의된 순서대로 저장된 symbol 혹은 literal 이름 */
+	String[] names;
+	/** names와 같은 index를 가지는 주소값 */
+	int[] locations;
+	/** 저장된 label의 개수 */
+	int count;
+	/** hash index. names의 index + 1을 저장하며, 0은 빈 칸을 의미한다. */
+	private int[] slots;
+	/** search(), indexOf()로 검색한 횟수와 그 중 찾지 못한 횟수 (AssemblerStats에서 사용) */
+	int lookups;
+	int misses;
 	// external 선언 및 처리방법을 구현한다.
-	
+
 	public LabelTable(){
-		label = new ArrayList<>();
-		locationList = new ArrayList<Integer>();
+		names = new String[INITIAL_CAPACITY];
+		locations = new int[INITIAL_CAPACITY];
+		slots = new int[INITIAL_CAPACITY * 2];
+		count = 0;
 	}
 	/**
 	 * 새로운 symbol과 literal을 table에 추가한다.
-	 * 
+	 *
 	 * @param label    : 새로 추가되는 symbol 혹은 literal의 lable
 	 * @param location : 해당 symbol 혹은 literal이 가지는 주소값 주의 : 만약 중복된 symbol, literal이
 	 *                 putName을 통해서 입력된다면 이는 프로그램 코드에 문제가 있음을 나타낸다. 매칭되는 주소값의 변경은
 	 *                 modifylable()을 통해서 이루어져야 한다.
 	 */
 	public void putName(String label, int location) {
-		if (!(this.label.contains(label))) {
-			this.label.add(label);
-			this.locationList.add(location);
+		label = label.intern();
+		int slot = findSlot(label);
+		if (slots[slot] == 0) {
+			if (count == names.length) {
+				names = Arrays.copyOf(names, count * 2);
+				locations = Arrays.copyOf(locations, count * 2);
+			}
+			names[count] = label;
+			locations[count] = location;
+			count++;
+			slots[slot] = count;
+			if (count * 2 > slots.length)
+				rehash(slots.length * 2);
 		}
-		else 
+		else
 			System.out.println ("Already Exist : "+label+location);
 	}
 
 	/**
 	 * 기존에 존재하는 symbol, literal 값에 대해서 가리키는 주소값을 변경한다.
-	 * 
+	 *
 	 * @param lable       : 변경을 원하는 symbol, literal의 label
 	 * @param newLocation : 새로 바꾸고자 하는 주소값
 	 */
 	public void modifyName(String lable, int newLocation) {
-		locationList.set(label.indexOf(lable), newLocation);
+		locations[indexOf(lable)] = newLocation;
 	}
 
 	/**
 	 * 인자로 전달된 symbol, literal이 어떤 주소를 지칭하는지 알려준다.
-	 * 
+	 *
 	 * @param label : 검색을 원하는 symbol 혹은 literal의 label
 	 * @return address: 가지고 있는 주소값. 해당 symbol, literal이 없을 경우 -1 리턴
 	 */
 	public int search(String label) {
-		int address = 0;
-		// ...
 		int index;
-		if ((index = this.label.indexOf(label)) == -1) {
+		if ((index = indexOf(label)) == -1) {
 			return index;
 		}
-		else {
-			address = this.locationList.get(index);
+		return locations[index];
+	}
+
+	/**
+	 * 인자로 전달된 symbol, literal이 정의된 순서(index)를 알려준다.
+	 *
+	 * @param label : 검색을 원하는 symbol 혹은 literal의 label
+	 * @return index: 정의된 순서. 해당 symbol, literal이 없을 경우 -1 리턴
+	 */
+	public int indexOf(String label) {
+		lookups++;
+		if (label == null) {
+			misses++;
+			return -1;
 		}
-		return address;
+		int index = slots[findSlot(label)] - 1;
+		if (index < 0)
+			misses++;
+		return index;
+	}
+
+	/**
+	 * text의 offset번째 글자부터 끝까지를 label로 보고 indexOf()와 같이 검색한다. '#', '@'을 뗀 operand를 substring
+	 * 없이 찾을 때 사용한다.
+	 *
+	 * @param text   : label을 포함한 문자열
+	 * @param offset : label이 시작되는 위치
+	 * @return index: 정의된 순서. 해당 symbol, literal이 없을 경우 -1 리턴
+	 */
+	public int indexOf(String text, int offset) {
+		if (offset == 0)
+			return indexOf(text);
+		lookups++;
+		int length = text.length() - offset;
+		int h = 0;
+		for (int i = offset; i < text.length(); i++)
+			h = 31 * h + text.charAt(i);
+		int mask = slots.length - 1;
+		int slot = (h ^ (h >>> 16)) & mask;
+		int entry;
+		while ((entry = slots[slot]) != 0) {
+			String name = names[entry - 1];
+			if (name.length() == length && text.startsWith(name, offset))
+				return entry - 1;
+			slot = (slot + 1) & mask;
+		}
+		misses++;
+		return -1;
+	}
+
+	/**
+	 * @return : 저장된 symbol, literal의 개수
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param index : 정의된 순서
+	 * @return : index번째로 정의된 symbol, literal의 이름
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @param index : 정의된 순서
+	 * @return : index번째로 정의된 symbol, literal의 주소값
+	 */
+	public int getLocation(int index) {
+		return locations[index];
+	}
+
+	/**
+	 * index번째로 정의된 symbol, literal의 주소값을 변경한다. 이름으로 다시 검색할 필요가 없을 때 사용한다.
+	 *
+	 * @param index       : 정의된 순서
+	 * @param newLocation : 새로 바꾸고자 하는 주소값
+	 */
+	public void setLocation(int index, int newLocation) {
+		locations[index] = newLocation;
+	}
+
+	/**
+	 * label이 저장되어 있거나 저장될 slot 번호를 찾는다. (linear probing)
+	 */
+	private int findSlot(String label) {
+		int mask = slots.length - 1;
+		int slot = hash(label) & mask;
+		int entry;
+		while ((entry = slots[slot]) != 0) {
+			String name = names[entry - 1];
+			if (name == label || name.equals(label))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * slots를 주어진 크기로 늘리고 모든 label을 다시 배치한다.
+	 */
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < count; i++) {
+			int slot = hash(names[i]) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = i + 1;
+		}
+	}
+
+	private static int hash(String label) {
+		int h = label.hashCode();
+		return h ^ (h >>> 16);
 	}
 
 }
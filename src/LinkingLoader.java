@@ -0,0 +1,437 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assembler가 만든 object program(H/D/R/T/M/E record)을 읽어 하나의 메모리 이미지로 link, load 한다.
+ *
+ * 사용법 : java LinkingLoader [-p 시작주소(hex)] [-o 이미지 파일] [object 파일...]
+ *
+ * object 파일을 주지 않으면 output_0000을 읽는다. 여러 파일을 주면 주어진 순서대로 이어서 배치한다. text 형식과
+ * BinaryObjectWriter의 binary 형식을 섞어서 줄 수 있으며, binary 파일은 memory-map 하여 읽는다.
+ *
+ * 1) pass1 : H, D record로 control section의 시작 주소를 정하고 ESTAB(external symbol table)을 만든다. ESTAB은
+ * hash index를 가진 LabelTable이다.
+ *
+ * 2) pass2 : T record를 byte 배열인 메모리 이미지에 바로 복사한다. M record는 주소, 길이(half byte), 부호와
+ * symbol 번호만 배열에 모아 둔다.
+ *
+ * 3) 모든 T record를 읽은 뒤 M record가 참조하는 symbol을 ESTAB에서 한 번씩만 찾고, 모아 둔 M record를 한 번에
+ * 적용한다.
+ *
+ * D, R record의 symbol 이름은 object program 형식대로 6글자 칸에 들어 있어야 한다. H record의 이름과 M
+ * record의 symbol은 길이 제한이 없다.
+ */
+public class LinkingLoader {
+	private static final int[] HEX = new int[128];
+	static {
+		Arrays.fill(HEX, -1);
+		for (int i = 0; i < 10; i++)
+			HEX['0' + i] = i;
+		for (int i = 0; i < 6; i++) {
+			HEX['A' + i] = 10 + i;
+			HEX['a' + i] = 10 + i;
+		}
+	}
+
+	/** 첫 control section이 배치되는 주소 */
+	int progaddr;
+	/** 실행 시작 주소. E record에 주소가 없으면 progaddr */
+	int execaddr = -1;
+	/** control section 이름과 EXTDEF symbol의 주소 */
+	LabelTable estab = new LabelTable();
+	/** control section 이름과 길이. load map 출력에 사용한다. */
+	LabelTable sections = new LabelTable();
+	/** progaddr부터 시작하는 메모리 이미지 */
+	byte[] memory = new byte[0];
+
+	/* pass2에서 모아 둔 M record. 같은 index가 같은 record이다. */
+	private int[] modAddress = new int[64];
+	private int[] modNibbles = new int[64];
+	/** references의 symbol 번호. '-'이면 bit를 뒤집어(~) 저장한다. */
+	private int[] modSymbol = new int[64];
+	private int modCount;
+	/** M record가 참조하는 symbol 이름. 같은 이름은 한 번만 ESTAB에서 찾는다. */
+	private LabelTable references = new LabelTable();
+
+	/** 현재 control section의 시작 주소와 길이 */
+	private int csaddr;
+	private int cslth;
+
+	/* 통계 */
+	int textRecords;
+	int modificationRecords;
+	int errors;
+
+	public static void main(String[] args) throws IOException {
+		LinkingLoader loader = new LinkingLoader();
+		String imageFile = null;
+		ArrayList<String> files = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-p") && i + 1 < args.length)
+				loader.progaddr = Integer.parseInt(args[++i], 16);
+			else if (args[i].equals("-o") && i + 1 < args.length)
+				imageFile = args[++i];
+			else
+				files.add(args[i]);
+		}
+		if (files.isEmpty())
+			files.add("output_0000");
+
+		loader.load(files);
+		System.out.print(loader.loadMap());
+		System.out.println("execution address : " + String.format("%06X", loader.execaddr));
+		if (imageFile != null)
+			try (Writer out = new BufferedWriter(new FileWriter(imageFile))) {
+				loader.writeImage(out);
+			}
+	}
+
+	/**
+	 * object 파일들을 읽어 link, load 한다.
+	 *
+	 * @param files : object 파일 이름. 주어진 순서대로 배치한다.
+	 */
+	public void load(List<String> files) throws IOException {
+		byte[][] texts = new byte[files.size()][];
+		ByteBuffer[] binaries = new ByteBuffer[files.size()];
+		for (int i = 0; i < texts.length; i++) {
+			Path path = Paths.get(files.get(i));
+			try (FileChannel channel = FileChannel.open(path)) {
+				ByteBuffer magic = ByteBuffer.allocate(BinaryObjectWriter.MAGIC.length);
+				channel.read(magic, 0);
+				if (Arrays.equals(magic.array(), BinaryObjectWriter.MAGIC))
+					binaries[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				else
+					texts[i] = Files.readAllBytes(path);
+			}
+		}
+		load(texts, binaries);
+	}
+
+	/**
+	 * 메모리에 있는 text 형식 object program들을 link, load 한다.
+	 */
+	public void load(byte[][] objects) {
+		load(objects, new ByteBuffer[objects.length]);
+	}
+
+	/**
+	 * i번째 object program은 binaries[i]가 있으면 binary 형식, 없으면 texts[i]의 text 형식이다.
+	 */
+	private void load(byte[][] texts, ByteBuffer[] binaries) {
+		csaddr = progaddr;
+		for (int i = 0; i < texts.length; i++) {
+			if (binaries[i] != null)
+				pass1(binaries[i]);
+			else
+				pass1(texts[i]);
+		}
+		memory = new byte[csaddr - progaddr];
+
+		csaddr = progaddr;
+		for (int i = 0; i < texts.length; i++) {
+			if (binaries[i] != null)
+				pass2(binaries[i]);
+			else
+				pass2(texts[i]);
+		}
+		applyModifications();
+		if (execaddr < 0)
+			execaddr = progaddr;
+	}
+
+	/**
+	 * H, D record로 ESTAB을 만든다.
+	 */
+	private void pass1(byte[] object) {
+		for (int start = 0, end; start < object.length; start = end + 1) {
+			end = lineEnd(object, start);
+			int last = trimEnd(object, start, end);
+			if (last == start)
+				continue;
+			switch (object[start]) {
+			case 'H':
+				String name = string(object, start + 1, last - 12).trim();
+				cslth = hex(object, last - 6, 6);
+				define(name, csaddr);
+				sections.putName(name, cslth);
+				break;
+			case 'D':
+				for (int p = start + 1; p + 12 <= last; p += 12)
+					define(string(object, p, p + 6).trim(), csaddr + hex(object, p + 6, 6));
+				break;
+			case 'E':
+				csaddr += cslth;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * T record를 메모리에 복사하고 M record를 모은다.
+	 */
+	private void pass2(byte[] object) {
+		for (int start = 0, end; start < object.length; start = end + 1) {
+			end = lineEnd(object, start);
+			int last = trimEnd(object, start, end);
+			if (last == start)
+				continue;
+			switch (object[start]) {
+			case 'H':
+				cslth = hex(object, last - 6, 6);
+				break;
+			case 'T':
+				textRecords++;
+				int at = csaddr - progaddr + hex(object, start + 1, 6);
+				int length = hex(object, start + 7, 2);
+				if (at < 0 || at + length > memory.length || start + 9 + length * 2 > last) {
+					error("T record out of range : " + string(object, start, last));
+					break;
+				}
+				for (int k = 0, p = start + 9; k < length; k++, p += 2)
+					memory[at + k] = (byte) (HEX[object[p] & 0x7F] << 4 | HEX[object[p + 1] & 0x7F]);
+				break;
+			case 'M':
+				int symbol = reference(string(object, start + 10, last));
+				addModification(csaddr + hex(object, start + 1, 6), hex(object, start + 7, 2),
+						object[start + 9] == '-' ? ~symbol : symbol);
+				break;
+			case 'E':
+				if (execaddr < 0 && last - start > 1)
+					execaddr = csaddr + hex(object, start + 1, last - start - 1);
+				csaddr += cslth;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * binary 형식의 section 이름과 EXTDEF로 ESTAB을 만든다. section 크기를 보고 object code는 건너뛴다.
+	 */
+	private void pass1(ByteBuffer object) {
+		for (int p = BinaryObjectWriter.MAGIC.length; p < object.limit(); p += 4 + object.getInt(p)) {
+			int q = p + 4;
+			String name = name(object, q);
+			q += 1 + (object.get(q) & 0xFF);
+			cslth = object.getInt(q);
+			define(name, csaddr);
+			sections.putName(name, cslth);
+			q += 8;
+			int count = object.getInt(q);
+			q += 4;
+			for (int k = 0; k < count; k++) {
+				String symbol = name(object, q);
+				q += 1 + (object.get(q) & 0xFF);
+				define(symbol, csaddr + object.getInt(q));
+				q += 4;
+			}
+			csaddr += cslth;
+		}
+	}
+
+	/**
+	 * binary 형식의 object code 구간을 메모리에 복사하고 relocation을 모은다.
+	 */
+	private void pass2(ByteBuffer object) {
+		ByteBuffer segment = object.duplicate();
+		for (int p = BinaryObjectWriter.MAGIC.length; p < object.limit(); p += 4 + object.getInt(p)) {
+			int q = p + 4;
+			q += 1 + (object.get(q) & 0xFF);
+			cslth = object.getInt(q);
+			int entry = object.getInt(q + 4);
+			if (execaddr < 0 && entry != BinaryObjectWriter.NO_ENTRY)
+				execaddr = csaddr + entry;
+			q += 8;
+			// EXTDEF, EXTREF는 pass1에서 사용했으므로 건너뛴다.
+			int count = object.getInt(q);
+			q += 4;
+			for (int k = 0; k < count; k++)
+				q += 1 + (object.get(q) & 0xFF) + 4;
+			count = object.getInt(q);
+			q += 4;
+			for (int k = 0; k < count; k++)
+				q += 1 + (object.get(q) & 0xFF);
+
+			int[] symbols = new int[object.getInt(q)];
+			q += 4;
+			for (int k = 0; k < symbols.length; k++) {
+				symbols[k] = reference(name(object, q));
+				q += 1 + (object.get(q) & 0xFF);
+			}
+
+			count = object.getInt(q);
+			q += 4;
+			for (int k = 0; k < count; k++) {
+				textRecords++;
+				int at = csaddr - progaddr + object.getInt(q);
+				int length = object.getInt(q + 4);
+				q += 8;
+				if (at < 0 || at + length > memory.length)
+					error("segment out of range : " + String.format("%06X", at + progaddr));
+				else {
+					segment.position(q);
+					segment.get(memory, at, length);
+				}
+				q += length;
+			}
+
+			count = object.getInt(q);
+			q += 4;
+			for (int k = 0; k < count; k++, q += 10) {
+				int symbol = symbols[object.getInt(q + 6)];
+				addModification(csaddr + object.getInt(q), object.get(q + 4), object.get(q + 5) == '-' ? ~symbol
+						: symbol);
+			}
+			csaddr += cslth;
+		}
+	}
+
+	private void addModification(int address, int nibbles, int symbol) {
+		modificationRecords++;
+		if (modCount == modAddress.length) {
+			modAddress = Arrays.copyOf(modAddress, modCount * 2);
+			modNibbles = Arrays.copyOf(modNibbles, modCount * 2);
+			modSymbol = Arrays.copyOf(modSymbol, modCount * 2);
+		}
+		modAddress[modCount] = address;
+		modNibbles[modCount] = nibbles;
+		modSymbol[modCount] = symbol;
+		modCount++;
+	}
+
+	/**
+	 * 모아 둔 M record를 적용한다. 참조하는 symbol의 주소는 먼저 한 번씩만 구한다.
+	 */
+	private void applyModifications() {
+		int[] values = new int[references.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = estab.search(references.getName(i));
+			if (values[i] < 0) {
+				error("undefined external symbol : " + references.getName(i));
+				values[i] = 0;
+			}
+		}
+		for (int i = 0; i < modCount; i++) {
+			int symbol = modSymbol[i];
+			int delta = symbol >= 0 ? values[symbol] : -values[~symbol];
+			int nibbles = modNibbles[i];
+			int bytes = (nibbles + 1) / 2;
+			int at = modAddress[i] - progaddr;
+			if (at < 0 || at + bytes > memory.length || bytes > 4) {
+				error("M record out of range : " + String.format("%06X", modAddress[i]));
+				continue;
+			}
+			int value = 0;
+			for (int k = 0; k < bytes; k++)
+				value = value << 8 | (memory[at + k] & 0xFF);
+			int mask = nibbles >= 8 ? -1 : (1 << (nibbles * 4)) - 1;
+			value = (value & ~mask) | ((value + delta) & mask);
+			for (int k = bytes - 1; k >= 0; k--, value >>>= 8)
+				memory[at + k] = (byte) value;
+		}
+		modCount = 0;
+	}
+
+	/**
+	 * @return : control section과 symbol의 주소, 길이를 정리한 load map
+	 */
+	public String loadMap() {
+		StringBuilder text = new StringBuilder();
+		text.append("control section\tsymbol name\taddress\tlength\n");
+		for (int i = 0; i < estab.size(); i++) {
+			String name = estab.getName(i);
+			int length = sections.search(name);
+			if (length >= 0)
+				text.append(name).append("\t\t").append(String.format("%06X\t%06X", estab.getLocation(i), length));
+			else
+				text.append('\t').append(name).append('\t').append(String.format("%06X", estab.getLocation(i)));
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 메모리 이미지를 한 줄에 16 byte 씩 주소와 함께 hex로 출력한다.
+	 */
+	public void writeImage(Writer out) throws IOException {
+		for (int at = 0; at < memory.length; at += 16) {
+			out.write(String.format("%06X ", progaddr + at));
+			for (int k = at; k < Math.min(at + 16, memory.length); k++) {
+				if ((k - at) % 4 == 0)
+					out.write(' ');
+				out.write(String.format("%02X", memory[k] & 0xFF));
+			}
+			out.write('\n');
+		}
+	}
+
+	private void define(String name, int address) {
+		if (estab.indexOf(name) >= 0)
+			error("duplicate external symbol : " + name);
+		else
+			estab.putName(name, address);
+	}
+
+	private int reference(String name) {
+		int index = references.indexOf(name);
+		if (index < 0) {
+			references.putName(name, 0);
+			index = references.size() - 1;
+		}
+		return index;
+	}
+
+	private void error(String message) {
+		errors++;
+		System.out.println(message);
+	}
+
+	/**
+	 * binary 형식에서 at 위치의 이름(길이 1 byte + ASCII)
+	 */
+	private static String name(ByteBuffer object, int at) {
+		int length = object.get(at) & 0xFF;
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+			bytes[i] = object.get(at + 1 + i);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	private static int lineEnd(byte[] object, int start) {
+		int end = start;
+		while (end < object.length && object[end] != '\n')
+			end++;
+		return end;
+	}
+
+	/**
+	 * 줄 끝의 '\r'을 뺀 끝 위치
+	 */
+	private static int trimEnd(byte[] object, int start, int end) {
+		while (end > start && object[end - 1] == '\r')
+			end--;
+		return end;
+	}
+
+	private static String string(byte[] object, int start, int end) {
+		return new String(object, start, Math.max(0, end - start), StandardCharsets.ISO_8859_1);
+	}
+
+	private static int hex(byte[] object, int start, int digits) {
+		int value = 0;
+		for (int i = start; i < start + digits; i++)
+			value = value << 4 | HEX[object[i] & 0x7F];
+		return value;
+	}
+}
@@ -0,0 +1,211 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * assembly listing(소스 줄 번호, 주소, 소스 줄, object code)을 출력하는 클래스. pass2가 Token 하나의 object code를
+ * 만들 때마다 writeLine()으로 그 줄을 바로 출력하므로, 전체 Token을 모아 두었다가 listing을 다시 만들 필요가 없다.
+ *
+ * 한 줄의 형식은 다음과 같다. 줄 번호는 소스 파일에서의 번호이므로 주석 줄과 매크로 정의 줄은 번호만 건너뛰며,
+ * 매크로 전개나 INCLUDE로 생긴 줄은 호출한 줄의 번호를 가진다. 주소가 의미 없는 줄(EXTDEF, EXTREF, END)은 주소를
+ * 비워 둔다. object code가 길면 그대로 이어서 출력하고 comment와는 한 칸 이상 띄운다. 줄 끝에는 공백을 남기지
+ * 않는다.
+ *
+ * <pre>
+ * 줄번호(5) 주소(4)  label(8) operator(8) operand(18) object code  comment
+ * </pre>
+ *
+ * hex 변환은 표를 이용하며, 출력은 재사용되는 byte buffer에 모았다가 FileChannel로 쓴다.
+ */
+public class ListingWriter implements Closeable {
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E',
+			'F' };
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int LABEL_WIDTH = 8;
+	private static final int OPERATOR_WIDTH = 8;
+	private static final int OPERAND_WIDTH = 18;
+	/** 4 byte(format 4) object code까지 정렬되도록 잡은 폭 */
+	private static final int CODE_WIDTH = 10;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer out;
+	/** writeLine()이 TokenTable에서 Token을 읽어 오는 곳 */
+	private final Token token = new Token("");
+	private final byte[] decimal = new byte[10];
+
+	/** 지금까지 출력한 줄 수 */
+	private int lines;
+	/** 지금까지 출력한 byte 수 */
+	private long written;
+
+	/**
+	 * @param fileName : 저장되는 파일 이름
+	 */
+	public ListingWriter(String fileName) throws IOException {
+		this(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	public ListingWriter(WritableByteChannel channel) {
+		this.channel = channel;
+		this.out = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * table의 index번째 Token을 한 줄로 출력한다. 그 Token의 object code가 만들어진 직후에 호출한다.
+	 *
+	 * @param table : pass2 중인 section의 TokenTable
+	 * @param index : 출력할 Token의 번호
+	 */
+	public void writeLine(TokenTable table, int index) throws IOException {
+		table.tokens.load(index, token);
+		writeLine(token, table.code);
+	}
+
+	/**
+	 * token을 한 줄로 출력한다.
+	 *
+	 * @param token : object code가 만들어진 Token
+	 * @param code  : token의 object code가 들어 있는 section의 code 배열
+	 */
+	public void writeLine(Token token, byte[] code) throws IOException {
+		lines++;
+		putDecimal(token.line, 5);
+		put(' ');
+		switch (token.kind) {
+		case Directive.EXTDEF:
+		case Directive.EXTREF:
+		case Directive.END:
+			putSpaces(4);
+			break;
+		default:
+			// START, CSECT의 주소는 pass2에서 section 길이를 모으는 데 쓰이므로 항상 0을 출력한다.
+			putHex(token.record == 'H' ? 0 : token.location, 4);
+		}
+		putSpaces(2);
+		boolean tail = token.codeLength > 0 || !token.comment.isEmpty();
+		putPadded(token.label, LABEL_WIDTH);
+		putString(token.operator);
+		if (tail || !token.operand[0].isEmpty())
+			putSpaces(Math.max(1, OPERATOR_WIDTH - token.operator.length()));
+		int width = 0;
+		for (int k = 0; k < token.operand.length; k++) {
+			if (k > 0) {
+				put(',');
+				width++;
+			}
+			putString(token.operand[k]);
+			width += token.operand[k].length();
+		}
+		if (tail)
+			putSpaces(Math.max(1, OPERAND_WIDTH - width));
+		for (int i = token.codeOffset; i < token.codeOffset + token.codeLength; i++) {
+			put(HEX[(code[i] >> 4) & 0xF]);
+			put(HEX[code[i] & 0xF]);
+		}
+		if (!token.comment.isEmpty()) {
+			putSpaces(Math.max(1, CODE_WIDTH - token.codeLength * 2));
+			putString(token.comment);
+		}
+		put('\n');
+	}
+
+	/**
+	 * section 사이에 빈 줄을 넣는다.
+	 */
+	public void endSection() throws IOException {
+		put('\n');
+	}
+
+	/**
+	 * @return : 지금까지 출력한 줄 수
+	 */
+	public int getLines() {
+		return lines;
+	}
+
+	/**
+	 * @return : 지금까지 출력한 byte 수
+	 */
+	public long getWritten() {
+		return written + out.position();
+	}
+
+	public void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining())
+			written += channel.write(out);
+		out.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	private void put(int b) throws IOException {
+		if (!out.hasRemaining())
+			flush();
+		out.put((byte) b);
+	}
+
+	/**
+	 * ASCII는 한 글자씩, 그 외의 문자가 있으면 UTF-8로 바꾸어 출력한다.
+	 */
+	private void putString(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				for (byte b : value.substring(i).getBytes(StandardCharsets.UTF_8))
+					put(b);
+				return;
+			}
+			put(c);
+		}
+	}
+
+	/**
+	 * value를 width 자리에 맞추어 왼쪽 정렬로 출력한다. value가 더 길면 공백 하나를 붙인다.
+	 */
+	private void putPadded(String value, int width) throws IOException {
+		putString(value);
+		putSpaces(Math.max(1, width - value.length()));
+	}
+
+	private void putSpaces(int count) throws IOException {
+		for (int i = 0; i < count; i++)
+			put(' ');
+	}
+
+	/**
+	 * 0 이상의 value를 digits 자리에 맞추어 오른쪽 정렬로 출력한다. 자리가 모자라면 늘린다.
+	 */
+	private void putDecimal(int value, int digits) throws IOException {
+		int length = 1;
+		for (int rest = value / 10; rest > 0; rest /= 10)
+			length++;
+		putSpaces(digits - length);
+		for (int i = length - 1; i >= 0; i--) {
+			decimal[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		for (int i = 0; i < length; i++)
+			put(decimal[i]);
+	}
+
+	/**
+	 * value를 digits 자리의 대문자 hex로 출력한다. 자리가 모자라면 늘린다.
+	 */
+	private void putHex(int value, int digits) throws IOException {
+		while (digits < 8 && (value >>> (digits * 4)) != 0)
+			digits++;
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+			put(HEX[(value >>> shift) & 0xF]);
+	}
+}
@@ -0,0 +1,470 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * pass1 앞에서 MACRO, MEND로 정의된 매크로를 전개한다. 전개 결과는 텍스트로 만들지 않고 Token으로 바로 넘기므로
+ * 다시 lexing 하지 않는다.
+ *
+ * 정의 :
+ *
+ * <pre>
+ * 이름  MACRO  &A,&B,&C=기본값
+ *       ...    (본문. label, operator, operand에 &A 등의 parameter를 쓸 수 있다)
+ *       MEND
+ * </pre>
+ *
+ * 1) 본문은 정의가 끝날 때 한 번 template으로 compile 된다. 각 field는 고정된 문자열 조각과 parameter 번호의 목록으로
+ * 나뉘어 있어, 전개할 때는 인자를 이어 붙이기만 한다. '->'는 parameter 뒤에 문자를 붙일 때 쓰는 연결 연산자이다.
+ * (예 : BUF&N->X)
+ *
+ * 2) 인자는 호출한 줄의 operand를 순서대로 사용하며, 비어 있으면 기본값을 사용한다. 호출한 줄에 label이 있으면 전개된
+ * 첫 줄에 붙인다. (첫 줄에 label이 이미 있으면 무시하고 경고한다)
+ *
+ * 3) 본문의 '$'는 전개할 때마다 $AA, $AB, ... 로 바뀌어 label이 겹치지 않게 한다.
+ *
+ * 4) '$'를 쓰지 않는 매크로는 인자가 같으면 전개 결과도 같으므로, 인자별로 전개된 field를 기억해 두고 재사용한다.
+ * (memoise) 기억하는 개수는 매크로마다 MEMO_LIMIT개로 제한한다.
+ *
+ * 본문 안에서 다른 매크로를 호출하거나 정의할 수 있으며, 전개된 줄도 다시 이 processor를 거친다.
+ *
+ * 첫 section(START) 앞에서 정의한 매크로는 모든 section에서 사용할 수 있고, section 안에서 정의한 매크로는 그
+ * section 안에서만 사용할 수 있다. '$'의 번호도 section마다 새로 시작한다. 따라서 section 하나의 전개 결과는 첫
+ * section 앞부분과 그 section의 내용만으로 정해지며, 순차, 병렬(--parallel), 증분(IncrementalAssembler) 어셈블의
+ * 결과가 같다.
+ *
+ * 'INCLUDE 파일이름' 줄은 그 파일의 내용으로 바뀐다. 파일은 IncludeCache에서 lexing 된 fragment로 가져오므로
+ * 같은 파일을 여러 번 include해도 한 번만 읽는다. include한 파일에서도 매크로를 정의하거나 다른 파일을 include할
+ * 수 있다.
+ */
+public class MacroProcessor {
+	/** 매크로 호출과 INCLUDE가 중첩될 수 있는 최대 깊이 */
+	static final int MAX_DEPTH = 32;
+	/** 매크로 하나가 기억하는 전개 결과의 최대 개수 */
+	static final int MEMO_LIMIT = 4096;
+
+	/** 이름별 매크로. 정의가 끝난 template은 바뀌지 않으므로 fork()한 processor와 공유한다. */
+	private final HashMap<String, Template> macros;
+	/** 이름별 전개 결과 memo */
+	private final HashMap<String, Map<List<String>, Expansion>> memos = new HashMap<String, Map<List<String>, Expansion>>();
+	/** 전개하여 만든 문자열. 같은 내용의 field는 같은 String을 사용한다. */
+	private final HashMap<String, String> strings = new HashMap<String, String>();
+	/** INCLUDE 파일의 fragment를 가져오는 곳 */
+	IncludeCache includes = IncludeCache.SHARED;
+	/** false이면 memo를 사용하지 않는다. (benchmark 비교용) */
+	boolean memoise = true;
+
+	/* 정의 중인 매크로. 정의 중이 아니면 definingName은 null */
+	private String definingName;
+	private String[] definingParams;
+	private ArrayList<Token> definingBody = new ArrayList<Token>();
+	/** 정의 중인 본문 안에 중첩된 MACRO의 깊이 */
+	private int nesting;
+
+	/** 첫 section 앞에서 정의된 매크로. 첫 START를 만나기 전이면 null */
+	private HashMap<String, Template> globals;
+	/** true이면 현재 section 안에서 정의된 매크로가 있다. */
+	private boolean sectionDefinitions;
+
+	/** '$' label에 붙일 다음 번호 */
+	private int uniqueCount;
+	private int depth;
+
+	/* 통계 */
+	int definitions;
+	int expansions;
+	int memoHits;
+	long expandedLines;
+	long includedLines;
+
+	public MacroProcessor() {
+		this.macros = new HashMap<String, Template>();
+	}
+
+	private MacroProcessor(HashMap<String, Template> macros) {
+		this.macros = macros;
+	}
+
+	/**
+	 * 지금까지 정의된 매크로를 공유하는 새 processor를 만든다. memo와 정의 상태는 공유하지 않으므로 다른 thread에서
+	 * 사용할 수 있다. 새 processor에서 정의한 매크로는 이 processor에 보이지 않는다.
+	 */
+	public MacroProcessor fork() {
+		MacroProcessor copy = new MacroProcessor(new HashMap<String, Template>(macros));
+		copy.memoise = memoise;
+		copy.includes = includes;
+		copy.globals = globals;
+		return copy;
+	}
+
+	/**
+	 * @return : 정의된 매크로가 하나라도 있거나 정의 중이면 true
+	 */
+	public boolean isActive() {
+		return !macros.isEmpty() || definingName != null;
+	}
+
+	/**
+	 * 한 줄을 처리한다. 매크로 정의에 속한 줄은 저장하고, 매크로 호출은 전개하여 sink로 넘기며, 나머지 줄은 그대로
+	 * sink로 넘긴다.
+	 *
+	 * @param token : 분석된 한 줄
+	 * @param sink  : 전개가 끝난 줄을 받을 곳 (보통 pass1의 define)
+	 */
+	public void process(Token token, Consumer<Token> sink) {
+		if (definingName != null) {
+			if (token.kind == Directive.MACRO)
+				nesting++;
+			else if (token.kind == Directive.MEND && nesting-- == 0) {
+				finishDefinition();
+				return;
+			}
+			definingBody.add(token);
+			return;
+		}
+		if (token.kind == Directive.MACRO) {
+			definingName = token.label;
+			definingParams = token.operand[0].isEmpty() ? new String[0] : token.operand.clone();
+			definingBody = new ArrayList<Token>();
+			nesting = 0;
+			return;
+		}
+		if (token.kind == Directive.INCLUDE) {
+			include(token, sink);
+			return;
+		}
+		if (token.kind == Directive.START || token.kind == Directive.CSECT)
+			beginSection();
+		Template template = macros.isEmpty() ? null : macros.get(token.operator);
+		if (template == null) {
+			sink.accept(token);
+			return;
+		}
+		if (depth >= MAX_DEPTH) {
+			System.out.println("Macro error : too deep expansion of " + template.name);
+			return;
+		}
+		expand(template, token, sink);
+	}
+
+	/**
+	 * 입력이 끝났을 때 호출한다. MEND 없이 끝난 정의가 있으면 알린다.
+	 */
+	public void finish() {
+		if (definingName != null) {
+			System.out.println("Macro error : missing MEND for " + definingName);
+			definingName = null;
+		}
+	}
+
+	/**
+	 * 새 section이 시작될 때 이전 section에서 정의한 매크로를 지우고 '$' 번호를 처음으로 돌린다.
+	 */
+	private void beginSection() {
+		uniqueCount = 0;
+		if (globals == null)
+			globals = new HashMap<String, Template>(macros);
+		else if (sectionDefinitions) {
+			macros.clear();
+			macros.putAll(globals);
+			memos.clear();
+		}
+		sectionDefinitions = false;
+	}
+
+	/**
+	 * include한 파일의 줄들을 차례로 처리한다.
+	 */
+	private void include(Token token, Consumer<Token> sink) {
+		String fileName = token.operand[0];
+		if (depth >= MAX_DEPTH) {
+			System.out.println("Include error : too deep include of " + fileName);
+			return;
+		}
+		IncludeCache.Fragment fragment;
+		try {
+			fragment = includes.get(fileName);
+		} catch (IOException e) {
+			System.out.println("Include error : " + fileName + " (" + e + ")");
+			return;
+		}
+		if (!token.label.isEmpty())
+			System.out.println("Include warning : label " + token.label + " on INCLUDE ignored");
+		depth++;
+		try {
+			for (int i = 0; i < fragment.size(); i++) {
+				includedLines++;
+				Token included = fragment.token(i);
+				included.line = token.line;
+				process(included, sink);
+			}
+		} finally {
+			depth--;
+		}
+	}
+
+	private void finishDefinition() {
+		if (definingName.isEmpty())
+			System.out.println("Macro error : MACRO without name");
+		else {
+			if (macros.containsKey(definingName))
+				System.out.println("Macro warning : redefinition of " + definingName);
+			macros.put(definingName, new Template(definingName, definingParams, definingBody));
+			memos.remove(definingName);
+			definitions++;
+			sectionDefinitions = globals != null;
+		}
+		definingName = null;
+		definingParams = null;
+		definingBody = new ArrayList<Token>();
+	}
+
+	private void expand(Template template, Token call, Consumer<Token> sink) {
+		expansions++;
+		String[] args = template.arguments(call.operand);
+		Expansion lines = null;
+		Map<List<String>, Expansion> memo = null;
+		List<String> key = null;
+		if (memoise && template.memoisable) {
+			memo = memos.get(template.name);
+			if (memo == null) {
+				memo = new LinkedHashMap<List<String>, Expansion>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<List<String>, Expansion> eldest) {
+						return size() > MEMO_LIMIT;
+					}
+				};
+				memos.put(template.name, memo);
+			}
+			key = Arrays.asList(args);
+			lines = memo.get(key);
+			if (lines != null)
+				memoHits++;
+		}
+		if (lines == null) {
+			lines = template.instantiate(args, template.memoisable ? null : unique(uniqueCount++), strings);
+			if (memo != null)
+				memo.put(key, lines);
+		}
+
+		depth++;
+		try {
+			for (int i = 0; i < lines.operators.length; i++) {
+				String label = lines.labels[i];
+				if (i == 0 && !call.label.isEmpty()) {
+					if (!label.isEmpty())
+						System.out.println("Macro warning : label " + call.label + " on " + template.name
+								+ " ignored");
+					else
+						label = call.label;
+				}
+				expandedLines++;
+				// operand 배열은 Token이 바꾸지 않으므로 memo의 것을 그대로 공유한다.
+				Token expanded = new Token(label, lines.operators[i], lines.operands[i]);
+				expanded.line = call.line;
+				process(expanded, sink);
+			}
+		} finally {
+			depth--;
+		}
+	}
+
+	/**
+	 * n번째 전개에서 '$' 대신 쓸 문자열. $AA, $AB, ..., $ZZ, $AAA, ...
+	 */
+	static String unique(int n) {
+		StringBuilder id = new StringBuilder();
+		n += 26;
+		while (n >= 26) {
+			id.append((char) ('A' + n % 26));
+			n = n / 26 - 1;
+		}
+		id.append((char) ('A' + n));
+		return "$" + id.reverse();
+	}
+
+	/**
+	 * compile된 매크로 본문
+	 */
+	static class Template {
+		/** field 조각에서 parameter 대신 '$' 번호를 넣는 자리 */
+		private static final int UNIQUE = -1;
+
+		final String name;
+		/** '&'를 포함한 parameter 이름 */
+		final String[] params;
+		/** parameter별 기본값. 없으면 "" */
+		final String[] defaults;
+		/** 본문 줄마다 label, operator, operand... 순서의 field */
+		final Field[][] lines;
+		/** '$'를 쓰지 않으면 true. 인자가 같으면 전개 결과도 같다. */
+		final boolean memoisable;
+
+		Template(String name, String[] prototype, List<Token> body) {
+			this.name = name;
+			params = new String[prototype.length];
+			defaults = new String[prototype.length];
+			for (int i = 0; i < prototype.length; i++) {
+				int eq = prototype[i].indexOf('=');
+				params[i] = eq < 0 ? prototype[i] : prototype[i].substring(0, eq);
+				defaults[i] = eq < 0 || eq + 1 == prototype[i].length() ? "" : prototype[i].substring(eq + 1);
+			}
+			lines = new Field[body.size()][];
+			boolean unique = false;
+			for (int i = 0; i < lines.length; i++) {
+				Token token = body.get(i);
+				Field[] fields = new Field[2 + token.operand.length];
+				fields[0] = compile(token.label);
+				fields[1] = compile(token.operator);
+				for (int k = 0; k < token.operand.length; k++)
+					fields[2 + k] = compile(token.operand[k]);
+				for (Field field : fields)
+					unique |= field.hasUnique();
+				lines[i] = fields;
+			}
+			memoisable = !unique;
+		}
+
+		/**
+		 * 호출한 줄의 operand를 parameter 순서의 인자로 바꾼다. 없거나 빈 인자는 기본값을 사용한다.
+		 */
+		String[] arguments(String[] operand) {
+			String[] args = new String[params.length];
+			for (int i = 0; i < args.length; i++) {
+				String value = i < operand.length ? operand[i] : "";
+				args[i] = value.isEmpty() ? defaults[i] : value;
+			}
+			if (operand.length > params.length && !operand[0].isEmpty())
+				System.out.println("Macro warning : too many arguments for " + name);
+			return args;
+		}
+
+		/**
+		 * 인자를 넣어 본문의 모든 field를 만든다.
+		 *
+		 * @param unique : '$' 대신 넣을 문자열. memoisable이면 사용하지 않는다.
+		 * @param pool   : 만든 문자열을 재사용하기 위한 pool
+		 */
+		Expansion instantiate(String[] args, String unique, HashMap<String, String> pool) {
+			Expansion result = new Expansion(lines.length);
+			for (int i = 0; i < lines.length; i++) {
+				Field[] fields = lines[i];
+				result.labels[i] = fields[0].build(args, unique, pool);
+				result.operators[i] = fields[1].build(args, unique, pool);
+				String[] operand = new String[fields.length - 2];
+				for (int k = 0; k < operand.length; k++)
+					operand[k] = fields[2 + k].build(args, unique, pool);
+				result.operands[i] = operand;
+			}
+			return result;
+		}
+
+		/**
+		 * field 문자열에서 parameter와 '$'의 위치를 찾아 조각으로 나눈다.
+		 */
+		private Field compile(String text) {
+			if (text.indexOf('&') < 0 && text.indexOf('$') < 0)
+				return new Field(text);
+			ArrayList<String> parts = new ArrayList<String>();
+			ArrayList<Integer> slots = new ArrayList<Integer>();
+			StringBuilder part = new StringBuilder();
+			int pos = 0;
+			while (pos < text.length()) {
+				char c = text.charAt(pos);
+				int param = c == '&' ? matchParam(text, pos) : -2;
+				if (c == '$' || param >= 0) {
+					parts.add(part.toString());
+					part.setLength(0);
+					slots.add(c == '$' ? UNIQUE : param);
+					pos += c == '$' ? 1 : params[param].length();
+					if (c != '$' && text.startsWith("->", pos))
+						pos += 2;
+				}
+				else {
+					part.append(c);
+					pos++;
+				}
+			}
+			parts.add(part.toString());
+			int[] slotArray = new int[slots.size()];
+			for (int i = 0; i < slotArray.length; i++)
+				slotArray[i] = slots.get(i);
+			return new Field(parts.toArray(new String[0]), slotArray);
+		}
+
+		/**
+		 * text의 pos 위치에서 시작하는 가장 긴 parameter 이름의 번호. 없으면 -1
+		 */
+		private int matchParam(String text, int pos) {
+			int best = -1;
+			for (int i = 0; i < params.length; i++)
+				if (text.startsWith(params[i], pos) && (best < 0 || params[i].length() > params[best].length()))
+					best = i;
+			return best;
+		}
+	}
+
+	/**
+	 * 인자를 넣어 만든 본문. 줄마다 label, operator, operand가 있다.
+	 */
+	static class Expansion {
+		final String[] labels;
+		final String[] operators;
+		final String[][] operands;
+
+		Expansion(int lines) {
+			labels = new String[lines];
+			operators = new String[lines];
+			operands = new String[lines][];
+		}
+	}
+
+	/**
+	 * template의 field 하나. parts[0] slot[0] parts[1] slot[1] ... parts[n] 순서로 이어 붙인다. slot이 없으면
+	 * 고정된 문자열이다.
+	 */
+	static class Field {
+		final String[] parts;
+		final int[] slots;
+
+		Field(String text) {
+			parts = new String[] { text };
+			slots = new int[0];
+		}
+
+		Field(String[] parts, int[] slots) {
+			this.parts = parts;
+			this.slots = slots;
+		}
+
+		boolean hasUnique() {
+			for (int slot : slots)
+				if (slot == Template.UNIQUE)
+					return true;
+			return false;
+		}
+
+		String build(String[] args, String unique, HashMap<String, String> pool) {
+			if (slots.length == 0)
+				return parts[0];
+			StringBuilder value = new StringBuilder(parts[0]);
+			for (int i = 0; i < slots.length; i++) {
+				value.append(slots[i] == Template.UNIQUE ? unique : args[slots[i]]);
+				value.append(parts[i + 1]);
+			}
+			// 빈 field는 다른 코드가 ""와 참조를 비교하므로 상수 ""를 사용한다.
+			if (value.length() == 0)
+				return "";
+			String text = value.toString();
+			String pooled = pool.putIfAbsent(text, text);
+			return pooled == null ? text : pooled;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+class Modification{
+	int location;
+	int length;
+	char sign;
+	String operand;
+	public Modification (int location, int length, char sign, String operand) {
+		this.location = location;
+		this.length = length;
+		this.sign = sign;
+		this.operand = operand;
+	}
+
+}
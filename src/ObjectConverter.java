@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * text 형식 object program(H/D/R/T/M/E record)과 BinaryObjectWriter의 binary 형식을 서로 변환한다.
+ *
+ * 사용법 : java ObjectConverter input output
+ *
+ * input의 처음 4 byte가 BinaryObjectWriter.MAGIC이면 binary를 text로, 아니면 text를 binary로 바꾼다. binary
+ * 형식은 이어진 T record를 하나의 구간으로 합쳐 두므로, 다시 text로 바꾸면 T record가 나뉘는 위치는 달라질 수
+ * 있지만 load 되는 내용은 같다.
+ */
+public class ObjectConverter {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage : java ObjectConverter input output");
+			return;
+		}
+		byte[] input = Files.readAllBytes(Paths.get(args[0]));
+		if (isBinary(input)) {
+			try (ObjectWriter out = new ObjectWriter(args[1])) {
+				toText(ByteBuffer.wrap(input), out);
+			}
+		}
+		else {
+			try (BinaryObjectWriter out = new BinaryObjectWriter(args[1])) {
+				toBinary(input, out);
+			}
+		}
+	}
+
+	static boolean isBinary(byte[] input) {
+		return input.length >= BinaryObjectWriter.MAGIC.length
+				&& Arrays.equals(input, 0, BinaryObjectWriter.MAGIC.length, BinaryObjectWriter.MAGIC, 0,
+						BinaryObjectWriter.MAGIC.length);
+	}
+
+	/**
+	 * text 형식 object program을 record 단위로 읽어 binary 형식으로 출력한다.
+	 */
+	static void toBinary(byte[] input, BinaryObjectWriter out) throws IOException {
+		String[] lines = new String(input, StandardCharsets.ISO_8859_1).split("\r?\n");
+		byte[] code = new byte[256];
+		for (String line : lines) {
+			if (line.isEmpty())
+				continue;
+			switch (line.charAt(0)) {
+			case 'H':
+				out.writeHeader(line.substring(1, line.length() - 12).trim(),
+						Integer.parseInt(line.substring(line.length() - 6), 16));
+				break;
+			case 'D': {
+				int count = (line.length() - 1) / 12;
+				String[] names = new String[count];
+				int[] locations = new int[count];
+				for (int k = 0; k < count; k++) {
+					names[k] = line.substring(1 + k * 12, 7 + k * 12).trim();
+					locations[k] = Integer.parseInt(line.substring(7 + k * 12, 13 + k * 12), 16);
+				}
+				out.writeDefine(names, locations);
+				break;
+			}
+			case 'R': {
+				String[] names = new String[(line.length() + 4) / 6];
+				for (int k = 0; k < names.length; k++)
+					names[k] = line.substring(1 + k * 6, Math.min(line.length(), 7 + k * 6)).trim();
+				out.writeRefer(names);
+				break;
+			}
+			case 'T': {
+				int length = Integer.parseInt(line.substring(7, 9), 16);
+				for (int k = 0; k < length; k++)
+					code[k] = (byte) Integer.parseInt(line.substring(9 + k * 2, 11 + k * 2), 16);
+				out.writeText(Integer.parseInt(line.substring(1, 7), 16), code, 0, length);
+				break;
+			}
+			case 'M':
+				out.writeModification(new Modification(Integer.parseInt(line.substring(1, 7), 16),
+						Integer.parseInt(line.substring(7, 9), 16), line.charAt(9), line.substring(10)));
+				break;
+			case 'E':
+				out.writeEnd(line.length() > 1 ? Integer.parseInt(line.substring(1), 16)
+						: BinaryObjectWriter.NO_ENTRY);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * binary 형식 object program을 text 형식으로 출력한다. object code 구간은 T record 크기로 나누어 출력한다.
+	 */
+	static void toText(ByteBuffer input, ObjectWriter out) throws IOException {
+		input.position(BinaryObjectWriter.MAGIC.length);
+		while (input.hasRemaining()) {
+			input.getInt();
+			String name = name(input);
+			int length = input.getInt();
+			int entry = input.getInt();
+			out.writeHeader(name, length);
+
+			int count = input.getInt();
+			if (count > 0) {
+				String[] names = new String[count];
+				int[] locations = new int[count];
+				for (int k = 0; k < count; k++) {
+					names[k] = name(input);
+					locations[k] = input.getInt();
+				}
+				out.writeDefine(names, locations);
+			}
+			count = input.getInt();
+			if (count > 0) {
+				String[] names = new String[count];
+				for (int k = 0; k < count; k++)
+					names[k] = name(input);
+				out.writeRefer(names);
+			}
+
+			String[] symbols = new String[input.getInt()];
+			for (int k = 0; k < symbols.length; k++)
+				symbols[k] = name(input);
+
+			count = input.getInt();
+			byte[] code = new byte[0];
+			for (int k = 0; k < count; k++) {
+				int location = input.getInt();
+				int size = input.getInt();
+				if (code.length < size)
+					code = new byte[size];
+				input.get(code, 0, size);
+				for (int at = 0; at < size; at += ObjectWriter.MAX_TEXT_LENGTH) {
+					int n = Math.min(ObjectWriter.MAX_TEXT_LENGTH, size - at);
+					out.writeText(location + at, n, false, code, at, n);
+				}
+			}
+			out.endText();
+
+			count = input.getInt();
+			for (int k = 0; k < count; k++) {
+				int location = input.getInt();
+				int nibbles = input.get();
+				char sign = (char) input.get();
+				out.writeModification(new Modification(location, nibbles, sign, symbols[input.getInt()]));
+			}
+			out.writeEnd(entry);
+		}
+	}
+
+	private static String name(ByteBuffer input) {
+		byte[] bytes = new byte[input.get() & 0xFF];
+		input.get(bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
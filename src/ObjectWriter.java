@@ -0,0 +1,391 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * pass2에서 만들어진 object code를 H/D/R/T/M/E record 형태로 출력하는 클래스. object code는 section의 code
+ * 배열에 byte로 저장되어 있으며, hex 문자열로의 변환은 이 클래스에서만 이루어진다.
+ *
+ * T record는 Token을 앞에서부터 한 번만 훑으면서 채워 나간다. 현재 record에 다음 Token을 더했을 때 30 byte를
+ * 넘거나, 주소가 record의 끝과 이어지지 않거나(RESW, RESB로 생긴 빈 공간. 크기와 관계없다), LTORG를 만나면
+ * record를 끝내고 새 record를 시작한다. hex 변환은 표를 이용하며, 출력은 재사용되는 byte buffer에 모았다가
+ * FileChannel로 쓴다.
+ */
+public class ObjectWriter implements Closeable {
+	/** T record 하나에 담을 수 있는 최대 byte 수 */
+	public static final int MAX_TEXT_LENGTH = 30;
+
+	private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E',
+			'F' };
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer out;
+
+	/* 작성 중인 T record. 내용은 text에 모아 두었다가 길이가 확정되면 출력한다. */
+	private byte[] text = new byte[MAX_TEXT_LENGTH * 2];
+	private int textLength;
+	private int textStart;
+	private int textBytes;
+	private boolean textOpen;
+	/** 지금까지 끝낸 T record 수. 작성 중인 record를 구분하는 번호로 쓴다. */
+	private int textSerial;
+
+	/** 지금까지 출력한 byte 수 */
+	private long written;
+	/** 지금까지 출력한 T, M record 수 (AssemblerStats에서 사용) */
+	int textRecords;
+	int modificationRecords;
+
+	/**
+	 * @param fileName : 저장되는 파일 이름
+	 */
+	public ObjectWriter(String fileName) throws IOException {
+		this(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * @param channel : 출력할 channel. 파일이 아닌 곳(메모리 등)에 출력할 때 사용한다.
+	 */
+	public ObjectWriter(WritableByteChannel channel) {
+		this.channel = channel;
+		this.out = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * 여러 section의 object program을 차례대로 출력한다.
+	 *
+	 * @param sections : pass2가 끝난 section별 TokenTable
+	 */
+	public void writeProgram(List<TokenTable> sections) throws IOException {
+		for (int i = 0; i < sections.size(); i++)
+			writeSection(sections.get(i), i == 0);
+	}
+
+	/**
+	 * 한 section의 object program을 출력한다.
+	 *
+	 * @param table : pass2가 끝난 section의 TokenTable
+	 * @param main  : 첫 번째 section이면 true. E record에 시작 주소를 붙인다.
+	 */
+	public void writeSection(TokenTable table, boolean main) throws IOException {
+		writeRecords(table);
+		writeEnd(main);
+	}
+
+	/**
+	 * section의 H, D, R, T, M record를 출력한다. E record는 section의 위치에 따라 달라지므로 writeEnd()로 따로
+	 * 출력한다.
+	 *
+	 * @param table : pass2가 끝난 section의 TokenTable
+	 */
+	public void writeRecords(TokenTable table) throws IOException {
+		Token token = new Token("");
+		for (int j = 0; j < table.size(); j++) {
+			table.tokens.load(j, token);
+			switch (token.record) {
+			case 'H':
+				// pass1은 항상 0번지부터 배치하므로 시작 주소는 0, 길이는 pass2가 header의 location에 누적해 둔 값이다.
+				writeHeader(table.symTab.getName(0), token.location);
+				break;
+			case 'D':
+				int[] locations = new int[token.operand.length];
+				for (int k = 0; k < locations.length; k++)
+					locations[k] = table.symTab.search(token.operand[k]);
+				writeDefine(token.operand, locations);
+				break;
+			case 'R':
+				writeRefer(token.operand);
+				break;
+			case 'T':
+				writeText(token.location, token.byteSize, token.kind == Directive.LTORG, table.code, token.codeOffset,
+						token.codeLength);
+				break;
+			}
+		}
+		endText();
+		for (Modification modif : table.modifTab)
+			writeModification(modif);
+	}
+
+	/**
+	 * H record를 출력한다. 시작 주소는 항상 0이다.
+	 *
+	 * @param name   : section 이름
+	 * @param length : section의 길이
+	 * @return : 길이 field(6자리)가 시작되는 파일 위치. patchHex()로 나중에 고칠 수 있다.
+	 */
+	long writeHeader(String name, int length) throws IOException {
+		put('H');
+		putPadded(name);
+		putHex(0, 6);
+		long position = getWritten();
+		putHex(length, 6);
+		put('\n');
+		return position;
+	}
+
+	/**
+	 * D record를 출력한다.
+	 *
+	 * @param names     : EXTDEF symbol 이름
+	 * @param locations : names와 같은 순서의 주소
+	 * @return : 각 주소 field(6자리)가 시작되는 파일 위치
+	 */
+	long[] writeDefine(String[] names, int[] locations) throws IOException {
+		long[] positions = new long[names.length];
+		put('D');
+		for (int k = 0; k < names.length; k++) {
+			putPadded(names[k]);
+			positions[k] = getWritten();
+			putHex(locations[k], 6);
+		}
+		put('\n');
+		return positions;
+	}
+
+	/**
+	 * R record를 출력한다.
+	 */
+	void writeRefer(String[] names) throws IOException {
+		put('R');
+		for (String name : names)
+			putPadded(name);
+		put('\n');
+	}
+
+	/**
+	 * 한 줄의 object code를 작성 중인 T record에 추가한다. 30 byte를 넘거나, 주소가 record의 끝과 이어지지
+	 * 않거나(RESW, RESB로 비워진 공간), LTORG이면 현재 record를 먼저 끝낸다. object code가 없는 줄은 무시한다.
+	 *
+	 * @param location : 줄의 주소
+	 * @param byteSize : 줄이 차지하는 byte 수
+	 * @param ltorg    : LTORG 줄이면 true
+	 * @param code     : object code가 들어 있는 배열
+	 * @param offset   : code에서 시작 위치
+	 * @param length   : object code의 byte 수
+	 */
+	void writeText(int location, int byteSize, boolean ltorg, byte[] code, int offset, int length)
+			throws IOException {
+		if (length == 0)
+			return;
+		if (textOpen && (textBytes + byteSize > MAX_TEXT_LENGTH
+				|| location != textStart + textBytes
+				|| ltorg))
+			flushText();
+		if (!textOpen) {
+			textOpen = true;
+			textStart = location;
+			textBytes = 0;
+			textLength = 0;
+		}
+		textBytes += byteSize;
+		appendText(code, offset, length);
+	}
+
+	/**
+	 * 작성 중인 T record가 있으면 출력한다.
+	 */
+	void endText() throws IOException {
+		if (textOpen)
+			flushText();
+	}
+
+	/**
+	 * @return : 작성 중인 T record의 번호. 없으면 -1
+	 */
+	int openText() {
+		return textOpen ? textSerial : -1;
+	}
+
+	/**
+	 * @return : 작성 중인 T record에 지금까지 추가된 object code의 byte 수. 다음 writeText()가 추가할 위치이다.
+	 */
+	int openTextLength() {
+		return textOpen ? textLength / 2 : 0;
+	}
+
+	/**
+	 * 아직 출력하지 않은 T record의 내용을 고친다. (one-pass 모드의 backpatch)
+	 *
+	 * @param serial : 고칠 내용이 추가될 때의 openText() 값
+	 * @param at     : record 안에서의 byte 위치 (추가될 때의 openTextLength() 값)
+	 * @return : 그 record가 이미 출력되어 고칠 수 없으면 false
+	 */
+	boolean patchText(int serial, int at, byte[] code, int offset, int length) {
+		if (!textOpen || serial != textSerial)
+			return false;
+		for (int i = 0; i < length; i++) {
+			text[(at + i) * 2] = HEX[(code[offset + i] >> 4) & 0xF];
+			text[(at + i) * 2 + 1] = HEX[code[offset + i] & 0xF];
+		}
+		return true;
+	}
+
+	/**
+	 * 작성 중인 T record와 별개로, 이미 출력된 주소의 내용을 덮어쓰는 T record를 바로 출력한다.
+	 */
+	void writeLateText(int location, byte[] code, int offset, int length) throws IOException {
+		textRecords++;
+		put('T');
+		putHex(location, 6);
+		putHex(length, 2);
+		for (int i = offset; i < offset + length; i++) {
+			put(HEX[(code[i] >> 4) & 0xF]);
+			put(HEX[code[i] & 0xF]);
+		}
+		put('\n');
+	}
+
+	/**
+	 * 이미 출력한 위치의 hex field를 고친다. 파일로 출력하는 경우에만 사용할 수 있다.
+	 *
+	 * @param position : writeHeader(), writeDefine()이 돌려준 위치
+	 * @param value    : 새 값
+	 * @param digits   : field의 자리 수
+	 */
+	void patchHex(long position, int value, int digits) throws IOException {
+		if (!(channel instanceof FileChannel))
+			throw new IOException("patch needs a file channel");
+		flush();
+		ByteBuffer field = ByteBuffer.allocate(digits);
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+			field.put(HEX[(value >>> shift) & 0xF]);
+		field.flip();
+		while (field.hasRemaining())
+			((FileChannel) channel).write(field, position + field.position());
+	}
+
+	/**
+	 * M record를 출력한다.
+	 */
+	void writeModification(Modification modif) throws IOException {
+		modificationRecords++;
+		put('M');
+		putHex(modif.location, 6);
+		putHex(modif.length, 2);
+		put((byte) modif.sign);
+		putString(modif.operand);
+		put('\n');
+	}
+
+	/**
+	 * section을 끝내는 E record를 출력한다.
+	 *
+	 * @param main : 첫 번째 section이면 true. E record에 시작 주소를 붙인다.
+	 */
+	public void writeEnd(boolean main) throws IOException {
+		writeEnd(main ? 0 : BinaryObjectWriter.NO_ENTRY);
+	}
+
+	/**
+	 * @param entry : E record에 붙일 시작 주소. BinaryObjectWriter.NO_ENTRY이면 붙이지 않는다.
+	 */
+	public void writeEnd(int entry) throws IOException {
+		put('E');
+		if (entry != BinaryObjectWriter.NO_ENTRY)
+			putHex(entry, 6);
+		put('\n');
+		put('\n');
+	}
+
+	/**
+	 * @return : 지금까지 출력한 byte 수
+	 */
+	public long getWritten() {
+		return written + out.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	/**
+	 * 미리 만들어 둔 record 내용을 그대로 출력한다. (cache된 section 등)
+	 */
+	public void writeRaw(byte[] records) throws IOException {
+		put(records, 0, records.length);
+	}
+
+	public void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining())
+			written += channel.write(out);
+		out.clear();
+	}
+
+	private void flushText() throws IOException {
+		textRecords++;
+		textSerial++;
+		put('T');
+		putHex(textStart, 6);
+		putHex(textBytes, 2);
+		put(text, 0, textLength);
+		put('\n');
+		textOpen = false;
+	}
+
+	/**
+	 * object code byte들을 hex 문자로 바꾸어 작성 중인 T record에 추가한다.
+	 */
+	private void appendText(byte[] code, int offset, int length) {
+		if (textLength + length * 2 > text.length)
+			text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length * 2));
+		for (int i = offset; i < offset + length; i++) {
+			text[textLength++] = HEX[(code[i] >> 4) & 0xF];
+			text[textLength++] = HEX[code[i] & 0xF];
+		}
+	}
+
+	private void put(int b) throws IOException {
+		if (!out.hasRemaining())
+			flush();
+		out.put((byte) b);
+	}
+
+	private void put(byte[] src, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!out.hasRemaining())
+				flush();
+			int n = Math.min(length, out.remaining());
+			out.put(src, offset, n);
+			offset += n;
+			length -= n;
+		}
+	}
+
+	private void putString(String value) throws IOException {
+		for (int i = 0; i < value.length(); i++)
+			put(value.charAt(i));
+	}
+
+	/**
+	 * value를 6자리에 맞추어 왼쪽 정렬로 출력한다. (String.format("%-6s")와 같다)
+	 */
+	private void putPadded(String value) throws IOException {
+		putString(value);
+		for (int i = value.length(); i < 6; i++)
+			put(' ');
+	}
+
+	/**
+	 * value를 digits 자리의 대문자 hex로 출력한다. 자리가 모자라면 늘린다. (String.format("%0nX")와 같다)
+	 */
+	void putHex(int value, int digits) throws IOException {
+		while (digits < 8 && (value >>> (digits * 4)) != 0)
+			digits++;
+		if (out.remaining() < digits)
+			flush();
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+			out.put(HEX[(value >>> shift) & 0xF]);
+	}
+}
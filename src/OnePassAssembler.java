@@ -0,0 +1,285 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * one-pass 어셈블러. 소스를 읽으면서 바로 object code를 만들어 출력하며, Token을 저장하지 않는다.
+ *
+ * 한 줄마다 TokenTable.locate()로 주소를 정하고 TokenTable.encode()로 object code를 만든 뒤 바로 T record에
+ * 추가한다. 아직 정의되지 않은 symbol이나 배치되지 않은 literal을 참조하는 format 3 명령어는 displacement를, format 4
+ * 명령어는 주소를 0으로 둔 채 출력하고, 그 symbol의 fix-up 목록에 연결해 둔다. symbol이 정의되거나 literal이 배치되면 목록의 명령어를
+ * 고쳐서, 아직 출력하지 않은 T record 안에 있으면 그 자리를 고치고(backpatch), 이미 출력되었으면 그 주소를 덮어쓰는
+ * T record를 따로 출력한다. 계산할 수 없는 WORD의 식은 section이 끝날 때 같은 방법으로 채운다.
+ *
+ * H record의 길이와 D record의 주소는 section이 끝난 뒤 파일의 해당 위치를 고쳐 쓴다. M record는 해당 주소의
+ * T record가 출력된 뒤에 출력한다. 따라서 메모리에 남는 것은 symbol, literal table과 아직 해결되지 않은 참조뿐이다.
+ *
+ * 결과는 two-pass 어셈블러와 같은 내용을 load하는 object program이다. (record의 나뉨과 순서는 다를 수 있다) 단,
+ * BASE의 operand와 '#' 뒤의 EQU 상수는 앞에서 이미 정의된 symbol이어야 하며, 명령어의 크기를 출력 뒤에 바꿀 수
+ * 없으므로 format 4로 바꾸는 relax는 지원하지 않는다.
+ *
+ * 사용법 : java OnePassAssembler [input 파일]  (Assembler --one-pass 와 같다)
+ */
+public class OnePassAssembler {
+	private final InstTable instTable;
+
+	/** 한 줄씩 읽으면서 매크로를 전개하는 processor */
+	MacroProcessor macros = new MacroProcessor();
+
+	/** section별 symbol, literal table. 모두 끝난 뒤 출력한다. */
+	ArrayList<LabelTable> symtabList = new ArrayList<LabelTable>();
+	ArrayList<LabelTable> literaltabList = new ArrayList<LabelTable>();
+
+	/* 통계 */
+	/** 읽은 줄 수 */
+	int lines;
+	/** 동시에 해결되지 않고 남아 있던 참조 수의 최대값 */
+	int maxOutstanding;
+	/** 출력 전의 T record 안에서 고친 참조 수 */
+	int patched;
+	/** 덮어쓰는 T record로 출력한 참조 수 */
+	int lateRecords;
+
+	/* 현재 section의 상태 */
+	private ObjectWriter writer;
+	private TokenTable table;
+	private int index;
+	private boolean main;
+	private long lengthPosition;
+	private String[] defineNames;
+	private long[] definePositions;
+	/** symbol 혹은 literal 이름별 fix-up 목록 */
+	private HashMap<String, Fixup> fixups = new HashMap<String, Fixup>();
+	/** section이 끝날 때 계산할 WORD */
+	private ArrayList<Fixup> deferredWords = new ArrayList<Fixup>();
+	private int outstanding;
+	/** 이미 배치되어 fix-up을 해결한 literal 수 */
+	private int placedLiterals;
+	/** table.modifTab에서 이미 출력한 M record 수 */
+	private int writtenModifications;
+	private final byte[] word = new byte[4];
+
+	/**
+	 * 해결되지 않은 참조 하나. 명령어이면 word에 displacement나 주소를 뺀 length byte의 명령어가, WORD이면
+	 * expression이 있다.
+	 */
+	private static class Fixup {
+		int location;
+		int word;
+		int length;
+		/** format 3 명령어를 출력할 때의 base register 값 */
+		int base;
+		Expression expression;
+		/** 명령어가 추가된 T record의 번호와 record 안의 위치 */
+		int serial;
+		int at;
+		Fixup next;
+	}
+
+	public OnePassAssembler(InstTable instTable) {
+		this.instTable = instTable;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String input = args.length > 0 ? args[0] : "input.txt";
+		OnePassAssembler assembler = new OnePassAssembler(InstTable.load("inst.data"));
+		assembler.assemble(input, "symtab_0000", "literaltab_0000", "output_0000");
+		System.out.println("lines : " + assembler.lines + ", max outstanding references : " + assembler.maxOutstanding
+				+ ", patched : " + assembler.patched + ", late T records : " + assembler.lateRecords);
+	}
+
+	/**
+	 * input 파일을 한 번 읽으면서 object program을 출력하고, 끝난 뒤 symbol table과 literal table을 출력한다.
+	 */
+	public void assemble(String inputFile, String symtabFile, String literaltabFile, String outputFile)
+			throws IOException {
+		SourceLexer lexer = new SourceLexer(inputFile);
+		try (ObjectWriter out = new ObjectWriter(outputFile)) {
+			writer = out;
+			try {
+				while (lexer.nextLine()) {
+					if (lexer.isCommentLine())
+						continue;
+					macros.process(new Token(lexer), token -> {
+						try {
+							line(token);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					});
+				}
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			macros.finish();
+			endSection();
+			writer = null;
+		}
+		lines = lexer.getLineCount();
+
+		try (PrintWriter out = new PrintWriter(new FileWriter(symtabFile))) {
+			for (LabelTable symtab : symtabList)
+				out.print(Assembler.formatSymbolTable(symtab));
+		}
+		try (PrintWriter out = new PrintWriter(new FileWriter(literaltabFile))) {
+			for (LabelTable literaltab : literaltabList)
+				out.print(Assembler.formatLiteralTable(literaltab));
+		}
+	}
+
+	/**
+	 * 한 줄을 처리한다.
+	 */
+	private void line(Token token) throws IOException {
+		if (token.kind == Directive.START || token.kind == Directive.CSECT) {
+			endSection();
+			beginSection();
+		}
+		if (table == null)
+			return;
+
+		table.locate(token);
+		if (token.label != "")
+			resolve(token.label, table.symTab.search(token.label));
+		for (; placedLiterals < table.literalTab.size()
+				&& table.literalTab.getLocation(placedLiterals) != -1; placedLiterals++)
+			resolve(table.literalTab.getName(placedLiterals), table.literalTab.getLocation(placedLiterals));
+
+		int modifications = table.modifTab.size();
+		table.codeSize = 0;
+		table.encode(token, index++);
+		switch (token.record) {
+		case 'H':
+			lengthPosition = writer.writeHeader(token.label, 0);
+			break;
+		case 'D':
+			defineNames = token.operand.clone();
+			definePositions = writer.writeDefine(defineNames, new int[defineNames.length]);
+			break;
+		case 'R':
+			writer.writeRefer(token.operand);
+			break;
+		case 'T':
+			int serial = writer.openText();
+			writer.writeText(token.location, token.byteSize, token.kind == Directive.LTORG, table.code,
+					token.codeOffset, token.codeLength);
+			// T record가 새로 시작되었다면 이전 줄들의 M record를 내보낼 수 있다.
+			if (writer.openText() != serial)
+				writeModifications(modifications);
+			if (table.unresolved != null || table.deferred != null) {
+				Fixup fixup = new Fixup();
+				fixup.location = token.location;
+				fixup.serial = writer.openText();
+				fixup.at = writer.openTextLength() - token.codeLength;
+				if (table.deferred != null) {
+					fixup.expression = table.deferred;
+					deferredWords.add(fixup);
+				}
+				else {
+					fixup.length = token.codeLength;
+					fixup.base = table.base;
+					for (int i = 0; i < fixup.length; i++)
+						fixup.word = fixup.word << 8 | (table.code[i] & 0xFF);
+					fixup.next = fixups.get(table.unresolved);
+					fixups.put(table.unresolved, fixup);
+				}
+				outstanding++;
+				maxOutstanding = Math.max(maxOutstanding, outstanding);
+			}
+			break;
+		}
+	}
+
+	private void beginSection() {
+		main = table == null;
+		table = new TokenTable(new LabelTable(), new LabelTable(), instTable);
+		table.onePass = true;
+		symtabList.add(table.symTab);
+		literaltabList.add(table.literalTab);
+		index = 0;
+		defineNames = null;
+		placedLiterals = 0;
+		writtenModifications = 0;
+	}
+
+	/**
+	 * section을 끝낸다. 미뤄 둔 WORD를 계산하고, 남은 T, M record와 E record를 출력한 뒤 H, D record를 고친다.
+	 */
+	private void endSection() throws IOException {
+		if (table == null)
+			return;
+		// WORD의 M record는 값을 채운 T record보다 뒤에 나와야 하므로, 모든 T record를 출력한 뒤 M record를 출력한다.
+		for (Fixup fixup : deferredWords) {
+			patch(fixup, table.evaluateWord(fixup.expression, fixup.location), 3);
+			outstanding--;
+		}
+		deferredWords.clear();
+		writer.endText();
+		writeModifications(table.modifTab.size());
+		writer.writeEnd(main);
+
+		writer.patchHex(lengthPosition, table.locctr, 6);
+		if (defineNames != null)
+			for (int k = 0; k < defineNames.length; k++)
+				writer.patchHex(definePositions[k], table.symTab.search(defineNames[k]), 6);
+
+		// 끝까지 정의되지 않은 참조는 two-pass와 같이 displacement 0으로 남는다.
+		outstanding = 0;
+		fixups.clear();
+	}
+
+	/**
+	 * name이 target 주소로 정해졌으므로 그 fix-up 목록의 명령어를 고친다.
+	 */
+	private void resolve(String name, int target) throws IOException {
+		if (target < 0)
+			return;
+		Fixup fixup = fixups.remove(name);
+		if (fixup == null)
+			return;
+		int symbol = table.symTab.indexOf(name);
+		for (; fixup != null; fixup = fixup.next) {
+			if (fixup.length == 4) {
+				// 채운 주소보다 M record가 먼저 나오지 않도록 고친 뒤에 추가한다. EQU 상수는 encodeFormat4()와 같이
+				// M record를 남기지 않는다.
+				patch(fixup, fixup.word | target & 0xFFFFF, 4);
+				if (symbol < 0 || !table.absoluteSymbols.get(symbol))
+					table.modifTab.add(new Modification(fixup.location + 1, 5, '+', table.symTab.getName(0)));
+			}
+			else
+				patch(fixup, fixup.word & ~(TokenTable.pFlag << 12)
+						| table.displacement(target, fixup.location + 3, fixup.base, name), 3);
+			outstanding--;
+		}
+	}
+
+	/**
+	 * fix-up 위치의 내용을 value로 바꾼다. 아직 출력하지 않은 T record 안이면 그 자리를 고치고, 아니면 덮어쓰는 T
+	 * record를 출력한다.
+	 */
+	private void patch(Fixup fixup, int value, int length) throws IOException {
+		for (int i = 0; i < length; i++)
+			word[i] = (byte) (value >>> ((length - 1 - i) * 8));
+		if (writer.patchText(fixup.serial, fixup.at, word, 0, length))
+			patched++;
+		else {
+			writer.writeLateText(fixup.location, word, 0, length);
+			lateRecords++;
+		}
+	}
+
+	/**
+	 * table.modifTab에서 아직 출력하지 않은 M record를 end 직전까지 출력한다.
+	 */
+	private void writeModifications(int end) throws IOException {
+		for (; writtenModifications < end; writtenModifications++)
+			writer.writeModification(table.modifTab.get(writtenModifications));
+		if (writtenModifications == table.modifTab.size()) {
+			table.modifTab.clear();
+			writtenModifications = 0;
+		}
+	}
+}
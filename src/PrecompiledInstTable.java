@@ -0,0 +1,37 @@
+/**
+ * InstTableGenerator가 inst.data로부터 만든 instruction table. 직접 고치지 않는다.
+ */
+final class PrecompiledInstTable {
+	/** 원본 파일의 길이와 CRC32 */
+	static final int LENGTH = 672;
+	static final long CHECKSUM = 0x4933C498L;
+
+	/** perfect hash의 곱셈 상수와 table 크기(2^BITS) */
+	static final long MULTIPLIER = 0xB788E5504CA1971BL;
+	static final int BITS = 8;
+
+	static final String[] NAMES = {
+			"WD", "TIXR", "TIX", "TIO", "TD", "SVC", "SUBR", "SUBF", "SUB", "STX", "STT", "STSW", "STS",
+			"STL", "STI", "STF", "STCH", "STB", "STA", "SSK", "SIO", "SHIFTR", "SHIFTL", "RSUB", "RMO", "RD",
+			"OR", "NORM", "MULR", "MULF", "MUL", "LPS", "LDX", "LDT", "LDS", "LDL", "LDF", "LDCH", "LDB",
+			"LDA", "JSUB", "JLT", "JGT", "JEQ", "J", "HIO", "FLOAT", "FIX", "DIVR", "DIVF", "DIV", "COMPR",
+			"COMPF", "COMP", "CLEAR", "AND", "ADDR", "ADDF", "ADD"
+	};
+	static final int[] OPCODES = {
+			0xDC, 0xB8, 0x2C, 0xF8, 0xE0, 0xB0, 0x94, 0x5C, 0x1C, 0x10, 0x84, 0xE8, 0x7C, 0x14, 0xD4, 0x80,
+			0x54, 0x78, 0xC, 0xEC, 0xF0, 0xA8, 0xA4, 0x4C, 0xAC, 0xD8, 0x44, 0xC8, 0x98, 0x60, 0x20, 0xD0,
+			0x4, 0x74, 0x6C, 0x8, 0x70, 0x50, 0x68, 0x0, 0x48, 0x38, 0x34, 0x30, 0x3C, 0xF4, 0xC0, 0xC4,
+			0x9C, 0x64, 0x24, 0xA0, 0x88, 0x28, 0xB4, 0x40, 0x90, 0x58, 0x18
+	};
+	static final int[] FORMATS = {
+			3, 2, 3, 1, 3, 2, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 1, 2, 2, 3, 2, 3, 3, 1, 2, 3, 3, 3,
+			3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3, 1, 1, 1, 2, 3, 3, 2, 3, 3, 2, 3, 2, 3, 3
+	};
+	static final int[] OPERANDS = {
+			1, 1, 1, 0, 1, 1, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 2, 2, 0, 2, 1, 1, 0, 2, 1, 1, 1,
+			1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 2, 1, 1, 2, 1, 1, 1, 1, 2, 1, 1
+	};
+
+	private PrecompiledInstTable() {
+	}
+}
@@ -0,0 +1,302 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * input 파일을 memory-mapped buffer로 읽으면서 한 줄씩 label, operator, operand, comment 영역을 나누는 lexer.
+ *
+ * 각 영역은 buffer 안의 시작/끝 offset으로만 표현되며, 문자열은 필요할 때만 만들어진다. 짧은 ASCII 문자열(symbol,
+ * operator 등)은 symbol pool에 한 번만 만들어져 이후 같은 내용이 나오면 같은 String 인스턴스를 재사용한다.
+ * 주의 : 하나의 mapping을 사용하므로 2GB를 넘는 파일은 읽을 수 없다.
+ */
+public class SourceLexer {
+	public static final int LABEL = 0;
+	public static final int OPERATOR = 1;
+	public static final int OPERAND = 2;
+	public static final int COMMENT = 3;
+	private static final int FIELD_COUNT = 4;
+
+	/* symbol pool에 넣을 수 있는 문자열은 한 글자당 7bit 씩 최대 9글자이다. */
+	private static final int PACK_BITS = 7;
+	private static final int PACK_MAX_LENGTH = 9;
+
+	/** 소스 파일 전체가 mapping된 buffer */
+	private final ByteBuffer buffer;
+	/** 다음 줄이 시작되는 offset */
+	private int next;
+	/** 현재 줄의 시작과 끝 (줄바꿈 문자 제외) */
+	private int lineStart;
+	private int lineEnd;
+	/** 현재 줄의 각 영역의 시작과 끝 offset. 영역이 없으면 start == end */
+	private final int[] fieldStart = new int[FIELD_COUNT];
+	private final int[] fieldEnd = new int[FIELD_COUNT];
+	/** 지금까지 읽은 줄 수. section()으로 만든 lexer는 원래 파일의 앞부분 줄 수부터 센다. */
+	private int lineCount;
+	/** 이 lexer의 buffer 앞에 있던 줄 수 (section()) */
+	private int lineBase;
+	/* section()이 줄 번호를 세기 위해 기억해 두는 마지막 offset과 그 앞의 줄 수 */
+	private int countedOffset;
+	private int countedLines;
+
+	/* symbol pool. packed key와 그에 해당하는 String을 open addressing으로 저장한다. */
+	private long[] poolKeys = new long[256];
+	private String[] poolValues = new String[256];
+	private int poolSize;
+
+	/** 한 영역을 String으로 만들 때 사용하는 임시 공간 */
+	private byte[] scratch = new byte[64];
+
+	/**
+	 * 파일을 열어 memory-mapped buffer를 만든다.
+	 *
+	 * @param inputFile : input 파일 이름
+	 */
+	public SourceLexer(String inputFile) throws IOException {
+		Path path = Paths.get(inputFile);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			this.buffer = mapped;
+		}
+	}
+
+	/**
+	 * 이미 메모리에 있는 내용을 읽는 lexer를 만든다.
+	 *
+	 * @param buffer : 소스 코드가 담긴 buffer. position부터 limit까지 읽는다.
+	 */
+	public SourceLexer(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
+
+	/**
+	 * 다음 줄로 이동하여 영역을 나눈다.
+	 *
+	 * @return : 읽을 줄이 남아 있으면 true
+	 */
+	public boolean nextLine() {
+		int limit = buffer.limit();
+		if (next >= limit)
+			return false;
+		lineStart = next;
+		int end = lineStart;
+		while (end < limit && buffer.get(end) != '\n')
+			end++;
+		next = end + 1;
+		if (end > lineStart && buffer.get(end - 1) == '\r')
+			end--;
+		lineEnd = end;
+		lineCount++;
+
+		// String.split("\t")와 같이 tab으로 구분하되, 4번째 영역 이후는 무시한다.
+		int start = lineStart;
+		for (int field = 0; field < FIELD_COUNT; field++) {
+			int pos = start;
+			while (pos < lineEnd && buffer.get(pos) != '\t')
+				pos++;
+			fieldStart[field] = start;
+			fieldEnd[field] = pos;
+			start = pos < lineEnd ? pos + 1 : lineEnd;
+		}
+		return true;
+	}
+
+	/**
+	 * @return : 현재 줄이 주석(label 영역이 ".")이면 true
+	 */
+	public boolean isCommentLine() {
+		return fieldEnd[LABEL] - fieldStart[LABEL] == 1 && buffer.get(fieldStart[LABEL]) == '.';
+	}
+
+	public boolean isEmpty(int field) {
+		return fieldStart[field] == fieldEnd[field];
+	}
+
+	public int start(int field) {
+		return fieldStart[field];
+	}
+
+	public int end(int field) {
+		return fieldEnd[field];
+	}
+
+	public byte byteAt(int offset) {
+		return buffer.get(offset);
+	}
+
+	/**
+	 * @return : 현재 줄이 시작되는 offset
+	 */
+	public int lineStart() {
+		return lineStart;
+	}
+
+	/**
+	 * @return : buffer 전체의 byte 수
+	 */
+	public int length() {
+		return buffer.limit();
+	}
+
+	/**
+	 * buffer의 [start, end) 구간만 읽는 새 lexer를 만든다. 새 lexer는 독립된 상태와 symbol pool을 가지므로 다른
+	 * thread에서 사용할 수 있다. 줄 번호(getLineCount())는 원래 파일에서의 번호를 이어서 센다.
+	 *
+	 * 앞에서부터 차례로 부를 때 줄을 세는 비용이 전체 파일 크기에 비례하도록 마지막으로 센 위치를 기억한다.
+	 */
+	public SourceLexer section(int start, int end) {
+		ByteBuffer view = buffer.duplicate();
+		view.limit(end);
+		view.position(start);
+		SourceLexer part = new SourceLexer(view);
+		if (start < countedOffset) {
+			countedOffset = 0;
+			countedLines = 0;
+		}
+		for (; countedOffset < start; countedOffset++)
+			if (buffer.get(countedOffset) == '\n')
+				countedLines++;
+		part.lineBase = lineBase + countedLines;
+		part.lineCount = part.lineBase;
+		return part;
+	}
+
+	/**
+	 * buffer의 [start, end) 구간을 digest에 넣는다.
+	 */
+	public void update(MessageDigest digest, int start, int end) {
+		ByteBuffer view = buffer.duplicate();
+		view.limit(end);
+		view.position(start);
+		digest.update(view);
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @return : 현재 줄 전체를 String으로 만든 값. listing 등 원문이 필요할 때만 사용한다.
+	 */
+	public String lineString() {
+		return string(lineStart, lineEnd);
+	}
+
+	/**
+	 * 영역을 String으로 만든다. 짧은 ASCII 문자열이면 symbol pool의 인스턴스를 돌려준다.
+	 *
+	 * @param field : LABEL, OPERATOR, OPERAND, COMMENT 중 하나
+	 * @return : 영역의 내용. 비어 있으면 ""
+	 */
+	public String field(int field) {
+		return symbol(fieldStart[field], fieldEnd[field]);
+	}
+
+	/**
+	 * buffer의 [start, end) 구간을 String으로 만든다. 짧은 ASCII 문자열이면 symbol pool에서 찾아 재사용한다.
+	 */
+	public String symbol(int start, int end) {
+		if (start == end)
+			return "";
+		long key = pack(start, end);
+		if (key == 0)
+			return string(start, end);
+		int mask = poolKeys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while (poolKeys[slot] != 0) {
+			if (poolKeys[slot] == key)
+				return poolValues[slot];
+			slot = (slot + 1) & mask;
+		}
+		String value = string(start, end).intern();
+		poolKeys[slot] = key;
+		poolValues[slot] = value;
+		if (++poolSize * 2 > poolKeys.length)
+			growPool();
+		return value;
+	}
+
+	/**
+	 * operand 영역을 ','로 나누어 String 배열로 만든다. operand 영역이 비어 있으면 {""}를 돌려준다.
+	 */
+	public String[] operands() {
+		int start = fieldStart[OPERAND];
+		int end = fieldEnd[OPERAND];
+		if (start == end)
+			return new String[] { "" };
+		// String.split(",")와 같이 뒤쪽의 빈 영역은 버린다.
+		while (end > start && buffer.get(end - 1) == ',')
+			end--;
+		int count = 1;
+		for (int i = start; i < end; i++)
+			if (buffer.get(i) == ',')
+				count++;
+		String[] result = new String[count];
+		int n = 0;
+		int from = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || buffer.get(i) == ',') {
+				result[n++] = symbol(from, i);
+				from = i + 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 영역의 내용이 주어진 ASCII 문자열과 같은지 String을 만들지 않고 비교한다.
+	 */
+	public boolean fieldEquals(int field, String value) {
+		int start = fieldStart[field];
+		if (fieldEnd[field] - start != value.length())
+			return false;
+		for (int i = 0; i < value.length(); i++)
+			if (buffer.get(start + i) != value.charAt(i))
+				return false;
+		return true;
+	}
+
+	private String string(int start, int end) {
+		int length = end - start;
+		if (scratch.length < length)
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		for (int i = 0; i < length; i++)
+			scratch[i] = buffer.get(start + i);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private long pack(int start, int end) {
+		if (end - start > PACK_MAX_LENGTH)
+			return 0;
+		long key = 0;
+		for (int i = start; i < end; i++) {
+			byte c = buffer.get(i);
+			if (c <= 0)
+				return 0;
+			key = (key << PACK_BITS) | c;
+		}
+		return key;
+	}
+
+	private void growPool() {
+		long[] oldKeys = poolKeys;
+		String[] oldValues = poolValues;
+		poolKeys = new long[oldKeys.length * 2];
+		poolValues = new String[oldKeys.length * 2];
+		int mask = poolKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == 0)
+				continue;
+			int slot = (int) ((oldKeys[i] * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+			while (poolKeys[slot] != 0)
+				slot = (slot + 1) & mask;
+			poolKeys[slot] = oldKeys[i];
+			poolValues[slot] = oldValues[i];
+		}
+	}
+}
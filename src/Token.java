@@ -0,0 +1,181 @@
+/**
+ * 각 라인별로 저장된 코드를 단어 단위로 분할한 후 의미를 해석하는 데에 사용되는 변수와 연산을 정의한다. 의미 해석이 끝나면 pass2에서
+ * object code로 변형되었을 때의 바이트 코드 역시 저장한다.
+ */
+class Token {
+	// 의미 분석 단계에서 사용되는 변수들
+	int location;
+	/** 소스 파일에서의 줄 번호 (1부터). 매크로 전개나 INCLUDE로 만든 줄은 그 호출 줄의 번호이다. 모르면 0 */
+	int line;
+	String label;
+	String operator;
+	String[] operand;
+	String comment;
+	char nixbpe;
+	/** pass1에서 InstTable.resolve()로 구한 instruction descriptor. instruction이 아니면 NOT_INSTRUCTION */
+	int inst;
+	/** Token을 만들 때 분류한 지시어 번호 (Directive). 지시어가 아니면 Directive.NONE */
+	int kind;
+	/** format 2에서 사용하는 register 번호 두 개 (r1<<4 | r2). Token을 만들 때 operand로부터 계산한다. */
+	int registers;
+	/** pass1에서 Encoder.select()로 고른 encoder 번호. 명령어가 아니면 Encoder.NONE */
+	int encoder;
+
+	// object code 생성 단계에서 사용되는 변수들
+	/** section의 code 배열에서 이 Token의 object code가 시작되는 위치 */
+	int codeOffset;
+	/** object code의 byte 수. object code가 없으면 0 */
+	int codeLength;
+	int byteSize;
+	char record;
+
+	/**
+	 * 클래스를 초기화 하면서 바로 line의 의미 분석을 수행한다.
+	 * 
+	 * @param line 문장단위로 저장된 프로그램 코드
+	 */
+	public Token(String line) {
+		// initialize ???
+		this.location = 0;
+		this.label = "";
+		this.operator = "";
+		this.comment = "";
+		this.operand = new String[1];
+		this.operand[0] = "";
+		this.inst = InstTable.NOT_INSTRUCTION;
+		parsing(line);
+		classify();
+		
+		this.codeOffset = 0;
+		this.codeLength = 0;
+		this.byteSize = 0;
+		
+		this.nixbpe = 0;
+		this.record ='T';
+	}
+
+	/**
+	 * SourceLexer가 나눈 현재 줄의 영역으로부터 Token을 만든다. comment는 String으로 만들지 않는다.
+	 *
+	 * @param lexer 현재 줄을 가리키고 있는 lexer
+	 */
+	public Token(SourceLexer lexer) {
+		this.location = 0;
+		this.line = lexer.getLineCount();
+		this.label = lexer.field(SourceLexer.LABEL);
+		this.operator = lexer.field(SourceLexer.OPERATOR);
+		this.operand = lexer.operands();
+		this.comment = "";
+		this.inst = InstTable.NOT_INSTRUCTION;
+		classify();
+
+		this.codeOffset = 0;
+		this.codeLength = 0;
+		this.byteSize = 0;
+
+		this.nixbpe = 0;
+		this.record ='T';
+	}
+
+	/**
+	 * 이미 나뉜 field로부터 Token을 만든다. MacroProcessor가 전개한 줄에 사용한다.
+	 *
+	 * @param label    label. 없으면 ""
+	 * @param operator operator
+	 * @param operand  operand 배열. 없으면 { "" }
+	 */
+	public Token(String label, String operator, String[] operand) {
+		this.location = 0;
+		this.label = label;
+		this.operator = operator;
+		this.operand = operand;
+		this.comment = "";
+		this.inst = InstTable.NOT_INSTRUCTION;
+		classify();
+
+		this.codeOffset = 0;
+		this.codeLength = 0;
+		this.byteSize = 0;
+
+		this.nixbpe = 0;
+		this.record ='T';
+	}
+
+	/**
+	 * operator를 지시어 번호로, operand를 format 2의 register 번호로 분류한다. pass1, pass2는 이 값으로 분기하므로
+	 * 문자열을 다시 비교하지 않는다.
+	 */
+	private void classify() {
+		this.kind = Directive.kindOf(operator);
+		int register = 0;
+		for (int i = 0; i < operand.length; i++) {
+			if (operand[i].length() <= 2)
+				register |= Directive.registerOf(operand[i]);
+			if (i == 0)
+				register = register << 4;
+		}
+		this.registers = register;
+	}
+
+	/**
+	 * line의 실질적인 분석을 수행하는 함수. Token의 각 변수에 분석한 결과를 저장한다.
+	 * 
+	 * @param line 문장단위로 저장된 프로그램 코드.
+	 */
+	public void parsing(String line) {
+		String[]token  =line.split("\t");
+		String[]tmp;
+		for (int type = 0; type<token.length; type++) {
+			if (token[type].isEmpty())
+				continue;
+			switch (type) {
+			case 0: //label
+				this.label = token[0];
+				break;
+			case 1: //operator
+				this.operator = token[1];
+				break;
+			case 2://operand
+				tmp = token[2].split(",");
+				this.operand = new String[tmp.length];
+				for (int i = 0; i<tmp.length; i++)
+					this.operand[i] = tmp[i];
+				break;
+			case 3: //comment
+				this.comment = token[3];
+			}
+		}
+	}
+
+	/**
+	 * n,i,x,b,p,e flag를 설정한다.
+	 * 
+	 * 
+	 * 사용 예 : setFlag(nFlag, 1) 또는 setFlag(TokenTable.nFlag, 1)
+	 * 
+	 * @param flag  : 원하는 비트 위치
+	 * @param value : 집어넣고자 하는 값. 1또는 0으로 선언한다.
+	 */
+	public void setFlag(int flag, int value) {
+		// ...
+		
+		if (value == 1)
+			this.nixbpe |= flag;
+		else
+			this.nixbpe &= ~flag;
+	}
+
+	/**
+	 * 원하는 flag들의 값을 얻어올 수 있다. flag의 조합을 통해 동시에 여러개의 플래그를 얻는 것 역시 가능하다.
+	 * 
+	 * 사용 예 : getFlag(nFlag) 또는 getFlag(nFlag|iFlag)
+	 * 
+	 * @param flags : 값을 확인하고자 하는 비트 위치
+	 * @return : 비트위치에 들어가 있는 값. 플래그별로 각각 32, 16, 8, 4, 2, 1의 값을 리턴할 것임.
+	 */
+
+	public int getFlag(int flags) {
+		return nixbpe & flags;
+	}
+	
+}
@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ * section의 Token들을 열(column) 단위 배열로 저장하는 공간. Token 객체를 줄마다 유지하는 대신 주소, 크기, flag
+ * 등은 int/byte 배열에, label, operator, operand는 symbol pool의 번호(id)로 저장한다.
+ *
+ * pass1은 분석이 끝난 Token을 add()로 넘기고, pass2는 load()로 재사용되는 Token 하나에 내용을 채워 사용한 뒤
+ * store()로 바뀐 값을 되돌려 놓는다. comment와 소스 줄 번호는 keepComments가 설정된 경우에만 저장한다.
+ */
+public class TokenStore {
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** label, operator, operand 문자열의 pool. 0번은 항상 ""이다. */
+	private final LabelTable symbols;
+
+	/* Token별 값. 같은 index가 같은 Token이다. */
+	private int[] location;
+	private int[] byteSize;
+	private int[] inst;
+	private int[] codeOffset;
+	private int[] codeLength;
+	private int[] labelId;
+	private int[] operatorId;
+	/** operandIds에서 이 Token의 operand가 시작되는 위치. size번째 칸에는 끝 위치가 들어 있다. */
+	private int[] operandStart;
+	private byte[] nixbpe;
+	private byte[] record;
+	/** Directive 번호 */
+	private byte[] kind;
+	/** format 2의 register 번호 두 개 */
+	private byte[] registers;
+	/** Encoder 번호 */
+	private byte[] encoder;
+	private String[] comment;
+	/** 소스 줄 번호 (Token.line) */
+	private int[] line;
+	private int size;
+
+	/** 모든 Token의 operand id가 차례로 저장되는 공간 */
+	private int[] operandIds;
+	private int operandCount;
+
+	/** true이면 comment와 소스 줄 번호를 저장한다. listing을 만들 때만 필요하다. */
+	private final boolean keepComments;
+
+	/* load()가 operand 배열을 새로 만들지 않도록 개수별로 하나씩 재사용한다. */
+	private String[][] operandArrays = new String[4][];
+
+	public TokenStore(boolean keepComments) {
+		this.keepComments = keepComments;
+		symbols = new LabelTable();
+		symbols.putName("", 0);
+		location = new int[INITIAL_CAPACITY];
+		byteSize = new int[INITIAL_CAPACITY];
+		inst = new int[INITIAL_CAPACITY];
+		codeOffset = new int[INITIAL_CAPACITY];
+		codeLength = new int[INITIAL_CAPACITY];
+		labelId = new int[INITIAL_CAPACITY];
+		operatorId = new int[INITIAL_CAPACITY];
+		operandStart = new int[INITIAL_CAPACITY + 1];
+		nixbpe = new byte[INITIAL_CAPACITY];
+		record = new byte[INITIAL_CAPACITY];
+		kind = new byte[INITIAL_CAPACITY];
+		registers = new byte[INITIAL_CAPACITY];
+		encoder = new byte[INITIAL_CAPACITY];
+		comment = keepComments ? new String[INITIAL_CAPACITY] : null;
+		line = keepComments ? new int[INITIAL_CAPACITY] : null;
+		operandIds = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Token의 내용을 배열에 추가한다. Token 객체는 이후 다른 줄에 재사용해도 된다.
+	 *
+	 * @return : 추가된 Token의 index
+	 */
+	public int add(Token token) {
+		if (size == location.length)
+			grow(Math.max(INITIAL_CAPACITY, size + (size >> 1)));
+		int index = size++;
+		labelId[index] = intern(token.label);
+		operatorId[index] = intern(token.operator);
+		if (operandCount + token.operand.length > operandIds.length)
+			operandIds = Arrays.copyOf(operandIds, Math.max(operandIds.length + (operandIds.length >> 1),
+					operandCount + token.operand.length));
+		operandStart[index] = operandCount;
+		for (String operand : token.operand)
+			operandIds[operandCount++] = intern(operand);
+		operandStart[index + 1] = operandCount;
+		if (keepComments) {
+			comment[index] = token.comment;
+			line[index] = token.line;
+		}
+		kind[index] = (byte) token.kind;
+		registers[index] = (byte) token.registers;
+		store(index, token);
+		return index;
+	}
+
+	/**
+	 * index번째 Token의 내용을 into에 채운다. operand 배열은 개수가 같은 load() 호출 사이에 재사용되므로 다음
+	 * load() 전까지만 유효하다.
+	 */
+	public void load(int index, Token into) {
+		into.location = location[index];
+		into.byteSize = byteSize[index];
+		into.inst = inst[index];
+		into.codeOffset = codeOffset[index];
+		into.codeLength = codeLength[index];
+		into.nixbpe = (char) nixbpe[index];
+		into.record = (char) record[index];
+		into.kind = kind[index];
+		into.registers = registers[index] & 0xFF;
+		into.encoder = encoder[index];
+		into.label = symbols.getName(labelId[index]);
+		into.operator = symbols.getName(operatorId[index]);
+		int count = operandCount(index);
+		if (count >= operandArrays.length)
+			operandArrays = Arrays.copyOf(operandArrays, count + 1);
+		String[] operand = operandArrays[count];
+		if (operand == null)
+			operand = operandArrays[count] = new String[count];
+		for (int k = 0; k < count; k++)
+			operand[k] = symbols.getName(operandIds[operandStart[index] + k]);
+		into.operand = operand;
+		into.comment = keepComments ? comment[index] : "";
+		into.line = keepComments ? line[index] : 0;
+	}
+
+	/**
+	 * Token에서 바뀔 수 있는 값(주소, 크기, flag, record, object code 위치)을 index번째 칸에 저장한다.
+	 */
+	public void store(int index, Token from) {
+		location[index] = from.location;
+		byteSize[index] = from.byteSize;
+		inst[index] = from.inst;
+		codeOffset[index] = from.codeOffset;
+		codeLength[index] = from.codeLength;
+		nixbpe[index] = (byte) from.nixbpe;
+		record[index] = (byte) from.record;
+		encoder[index] = (byte) from.encoder;
+	}
+
+	/**
+	 * 사용하지 않는 여유 공간을 돌려준다. pass1이 끝난 뒤 호출한다.
+	 */
+	public void trimToSize() {
+		grow(size);
+		operandIds = Arrays.copyOf(operandIds, operandCount);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int location(int index) {
+		return location[index];
+	}
+
+	public void setLocation(int index, int value) {
+		location[index] = value;
+	}
+
+	public int byteSize(int index) {
+		return byteSize[index];
+	}
+
+	public int codeOffset(int index) {
+		return codeOffset[index];
+	}
+
+	public int codeLength(int index) {
+		return codeLength[index];
+	}
+
+	public char record(int index) {
+		return (char) record[index];
+	}
+
+	public int kind(int index) {
+		return kind[index];
+	}
+
+	public int encoder(int index) {
+		return encoder[index];
+	}
+
+	public String label(int index) {
+		return symbols.getName(labelId[index]);
+	}
+
+	public String operator(int index) {
+		return symbols.getName(operatorId[index]);
+	}
+
+	public int operandCount(int index) {
+		return operandStart[index + 1] - operandStart[index];
+	}
+
+	public String operand(int index, int k) {
+		return symbols.getName(operandIds[operandStart[index] + k]);
+	}
+
+	/**
+	 * @return : k번째 operand의 symbol pool 번호. 같은 문자열이면 같은 번호이므로 문자열 비교 대신 사용할 수 있다.
+	 */
+	public int operandId(int index, int k) {
+		return operandIds[operandStart[index] + k];
+	}
+
+	/**
+	 * @return : index번째 Token의 comment. keepComments가 아니면 항상 ""
+	 */
+	public String comment(int index) {
+		return keepComments ? comment[index] : "";
+	}
+
+	private int intern(String name) {
+		int id = symbols.indexOf(name);
+		if (id < 0) {
+			symbols.putName(name, 0);
+			id = symbols.size() - 1;
+		}
+		return id;
+	}
+
+	private void grow(int capacity) {
+		location = Arrays.copyOf(location, capacity);
+		byteSize = Arrays.copyOf(byteSize, capacity);
+		inst = Arrays.copyOf(inst, capacity);
+		codeOffset = Arrays.copyOf(codeOffset, capacity);
+		codeLength = Arrays.copyOf(codeLength, capacity);
+		labelId = Arrays.copyOf(labelId, capacity);
+		operatorId = Arrays.copyOf(operatorId, capacity);
+		operandStart = Arrays.copyOf(operandStart, capacity + 1);
+		nixbpe = Arrays.copyOf(nixbpe, capacity);
+		record = Arrays.copyOf(record, capacity);
+		kind = Arrays.copyOf(kind, capacity);
+		registers = Arrays.copyOf(registers, capacity);
+		encoder = Arrays.copyOf(encoder, capacity);
+		if (keepComments) {
+			comment = Arrays.copyOf(comment, capacity);
+			line = Arrays.copyOf(line, capacity);
+		}
+	}
+}
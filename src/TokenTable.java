@@ -1,5 +1,6 @@
 import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * 사용자가 작성한 프로그램 코드를 단어별로 분할 한 후, 의미를 분석하고, 최종 코드로 변환하는 과정을 총괄하는 클래스이다.
@@ -29,19 +30,78 @@ public class TokenTable {
 	public static final int PCReg = 8;
 	public static final int SWReg = 9;
 
-	public static int def_index = 0;
-	public static int ref_index = 0;
+	/* pass2에서 마지막으로 만난 EXTDEF, EXTREF의 Token 번호 */
+	int def_index = 0;
+	int ref_index = 0;
+
+	/** pass1에서 사용하는 section의 location counter */
+	int locctr = 0;
+
+	/** pass1에서 instTab을 검색한 횟수와 그 중 instruction이 아니었던 횟수 (AssemblerStats에서 사용) */
+	int instLookups = 0;
+	int instMisses = 0;
 	
 	/* Token을 다룰 때 필요한 테이블들을 링크시킨다. */
 	LabelTable symTab;
 	LabelTable literalTab;
 	InstTable instTab;
 
-	/** 각 line을 의미별로 분할하고 분석하는 공간. */
-	ArrayList<Token> tokenList;
+	/** 각 line을 의미별로 분할하고 분석한 결과를 저장하는 공간. */
+	TokenStore tokens;
+	/** pass2에서 tokens의 내용을 읽어 사용하는 재사용 Token */
+	private final Token cursor;
 	
 	ArrayList<Modification> modifTab;
 
+	/** pass1에서 만난 EXTREF symbol들. 식을 계산할 때 외부 참조인지 판단하는 데 사용한다. */
+	LabelTable externals = new LabelTable();
+	/** symTab에서 절대값(EQU로 정의된 상수 등)인 symbol의 번호. 나머지 symbol은 재배치 값이다. */
+	BitSet absoluteSymbols = new BitSet();
+	/** WORD의 operand를 분석한 식. WORD Token이 나오는 순서대로 저장되며, 분석에 실패하면 null이다. */
+	private ArrayList<Expression> expressions = new ArrayList<Expression>();
+	/** pass2에서 다음 WORD가 사용할 expressions의 번호 */
+	private int nextExpression = 0;
+	/** EQU의 operand를 분석한 식과 그 Token 번호. relocate()가 EQU 값을 다시 계산할 때 사용한다. (one-pass 모드 제외) */
+	private Expression[] equates = new Expression[16];
+	private int[] equateTokens = new int[16];
+	private int equateCount = 0;
+
+	/** true이면 one-pass 모드. Token을 저장하지 않으며 encode()가 정의되지 않은 참조를 아래 두 값으로 알린다. */
+	boolean onePass = false;
+	/** 마지막 encode()에서 찾지 못한 format 3 operand의 이름. 없으면 null */
+	String unresolved;
+	/** 마지막 encode()에서 아직 정의되지 않은 symbol 때문에 계산하지 못한 WORD의 식. 없으면 null */
+	Expression deferred;
+
+	/** pass2에서 BASE로 알려 준 base register의 값. BASE가 없거나 NOBASE 뒤이면 -1 */
+	int base = -1;
+
+	/* relax()의 통계 */
+	/** format 4로 바꾼 명령어 수 */
+	int promoted = 0;
+	/** 주소를 다시 정한 횟수 */
+	int relaxPasses = 0;
+
+	/** literalTab과 같은 순서로, pass1에서 literal을 등록할 때 미리 변환해 둔 literal의 object code */
+	private byte[][] literalBytes = new byte[16][];
+	/**
+	 * 아직 배치되지 않은 literal 대기열의 시작. literal은 literalTab에 등록된 순서대로 배치되므로 대기열은
+	 * literalTab의 [pendingLiteral, size()) 구간이다.
+	 */
+	private int pendingLiteral = 0;
+	/** LTORG, END마다 배치한 literal 구간 [first, end)를 차례로 저장한다. */
+	private int[] literalPools = new int[8];
+	private int poolCount = 0;
+	/** pass2에서 다음 LTORG, END가 출력할 literalPools의 번호 */
+	private int nextPool = 0;
+
+	/** pass2에서 만들어진 section의 object code. 각 Token은 codeOffset부터 codeLength byte를 가진다. */
+	byte[] code;
+	/** code 배열에서 사용 중인 byte 수 */
+	int codeSize;
+	/** release() 이후 size()가 돌려줄 Token 수 */
+	private int releasedSize;
+
 	/**
 	 * 초기화하면서 symTable과 instTable을 링크시킨다.
 	 * 
@@ -50,398 +110,736 @@ public class TokenTable {
 	 * @param instTab   : instruction 명세가 정의된 instTable
 	 */
 	public TokenTable(LabelTable symTab, LabelTable literalTab, InstTable instTab) {
+		this(symTab, literalTab, instTab, false);
+	}
+
+	/**
+	 * @param keepComments : true이면 각 줄의 comment도 저장한다. listing을 만들 때 사용한다.
+	 */
+	public TokenTable(LabelTable symTab, LabelTable literalTab, InstTable instTab, boolean keepComments) {
 		// ...
-		this.tokenList = new ArrayList<Token>();
+		this.tokens = new TokenStore(keepComments);
+		this.cursor = new Token("");
 		this.symTab = symTab;
 		this.literalTab = literalTab;
 		this.instTab = instTab; 
 		
 		modifTab = new ArrayList <Modification>();
+		code = new byte[256];
+		codeSize = 0;
 	}
 
 	/**
-	 * 일반 문자열을 받아서 Token단위로 분리시켜 tokenList에 추가한다.
+	 * 일반 문자열을 받아서 Token단위로 분리시켜 tokens에 추가한다.
 	 * 
 	 * @param line : 분리되지 않은 일반 문자열
 	 */
 	public void putToken(String line) {
-		tokenList.add(new Token(line));
+		tokens.add(new Token(line));
 	}
 
 	/**
-	 * tokenList에서 index에 해당하는 Token을 리턴한다.
-	 * 
-	 * @param index
-	 * @return : index번호에 해당하는 코드를 분석한 Token 클래스
+	 * 이미 분석된 Token을 tokens에 추가한다. Token의 내용은 복사되므로 Token 객체는 버려도 된다.
+	 *
+	 * @param token : 분석된 Token
 	 */
-	public Token getToken(int index) {
-		return tokenList.get(index);
+	public void putToken(Token token) {
+		tokens.add(token);
 	}
 
 	/**
-	 * Pass2 과정에서 사용한다. instruction table, symbol table 등을 참조하여 objectcode를 생성하고, 이를
-	 * 저장한다.
-	 * 
-	 * @param index
+	 * @return : section에 저장된 Token의 개수
 	 */
-	public void makeObjectCode(int index) {
-		// ...
-		int E_addr =0;
-		String code ="";
-		String tmp_operator = "";
-		int tmp = 0;
-		int register =0;
-		int result =0;
-		
-		if (tokenList.get(index).operator.equals("START") ||
-			tokenList.get(index).operator.equals("CSECT")) {
-			E_addr = 0;
-			tokenList.get(index).record = 'H';
-			code =	"H"
-					+String.format("%-6s", symTab.label.get(0))
-					+String.format("%06X", tokenList.get(index).byteSize);
-		}
-		else if (tokenList.get(index).operator.equals("EXTDEF")) {
-			def_index = index;
-			tokenList.get(index).record = 'D';
-			code ="D";
-			for (int i=0; i<tokenList.get(index).operand.length; i++) {
-				code +=String.format("%-6s", tokenList.get(index).operand[i])
-						+String.format("%06X", symTab.search(tokenList.get(index).operand[i]));
-			}
+	public int size() {
+		return tokens != null ? tokens.size() : releasedSize;
+	}
+
+	/**
+	 * object program 출력이 끝난 section의 Token과 object code를 버린다. symbol, literal table과 연산 횟수는
+	 * 남으므로 table 출력과 AssemblerStats에는 영향이 없다.
+	 */
+	void release() {
+		releasedSize = tokens.size();
+		tokens = null;
+		code = null;
+		codeSize = 0;
+		expressions = null;
+		equates = null;
+		equateTokens = null;
+		literalBytes = null;
+		literalPools = null;
+		modifTab.clear();
+	}
+
+	/**
+	 * pass1에서 한 줄(Token)을 처리한다. symbol과 literal을 등록하고 locctr를 증가시킨 뒤 Token을 tokens에
+	 * 추가한다.
+	 *
+	 * @param token : 분석된 한 줄
+	 */
+	public void define(Token token) {
+		locate(token);
+		putToken(token);
+	}
+
+	/**
+	 * define()에서 Token을 저장하는 것을 제외한 부분. Token에 주소와 크기를 정하고, symbol과 literal을 등록하고,
+	 * locctr를 증가시킨다. one-pass 모드는 Token을 저장하지 않고 이 함수와 encode()만 사용한다.
+	 *
+	 * @param token : 분석된 한 줄
+	 */
+	void locate(Token token) {
+		int location;
+		String label;
+		String operator;
+		String[] operand;
+
+		token.location = locctr;
+
+		location = token.location;
+		label = token.label;
+		operator = token.operator;
+		operand = token.operand;
+
+		/*
+		 * System.out.println("location : "+location);
+		 * System.out.println("label : "+label);
+		 * System.out.println("operator : "+operator);
+		 * System.out.println("operand :"+operand);
+		 * System.out.println("comment : "+comment);
+		 * System.out.println("nixbpe : "+nixbpe+"\n");
+		 */
+		if (label != "") // symtab
+			symTab.putName(label, locctr); // add to symbol
+
+		if (operand[0] != "") // literaltab
+			if (operand[0].charAt(0) == '=')
+				if (literalTab.indexOf(operand[0]) == -1) { // 아직 배치되지 않은 literal은 search()가 -1을 돌려주므로 indexOf로 확인한다
+					literalTab.putName(operand[0], -1);
+					putLiteralBytes(literalTab.size() - 1, decodeConstant(operand[0], 1));
+				}
+		// System.out.println("THE : "+instTable.instMap.get("ADD").opcode);
+
+		// calculating next location
+		token.inst = instTab.resolve(operator);
+		token.encoder = Encoder.select(token);
+		instLookups++;
+		if (token.inst == InstTable.NOT_INSTRUCTION) {
+			instMisses++;
+			if (token.kind == Directive.NONE && !operator.isEmpty())
+				System.out.println("Operator error : unknown operator " + operator);
 		}
-		else if (tokenList.get(index).operator.equals("EXTREF")) {
-			ref_index = index;
-			tokenList.get(index).record = 'R';
-			code = "R";
-			for (int i=0; i<tokenList.get(index).operand.length; i++) {
-				code +=String.format("%-6s", tokenList.get(index).operand[i]);
+		if (token.inst != InstTable.NOT_INSTRUCTION) {
+			locctr += InstTable.formatOf(token.inst);
+			token.byteSize += InstTable.formatOf(token.inst);
+		} else switch (token.kind) {
+		case Directive.RESW:
+			locctr += 3 * Integer.parseInt(operand[0]);
+			token.byteSize += 3 * Integer.parseInt(operand[0]);
+			break;
+		case Directive.RESB:
+			locctr += Integer.parseInt(operand[0]);
+			token.byteSize += Integer.parseInt(operand[0]);
+			break;
+		case Directive.WORD:
+			locctr += 3;
+			token.byteSize += 3;
+			expressions.add(compile(operand[0]));
+			break;
+		case Directive.BYTE:
+			if (operand[0].charAt(0) == 'X') {
+				locctr += (operand[0].length() - 3) / 2;
+				token.byteSize += (operand[0].length() - 3) / 2;
+			} else {
 				
+				locctr += (operand[0].length() - 3);
+				token.byteSize += (operand[0].length() - 3);
 			}
-				
-		}
-		if (tokenList.get(index).operator.charAt(0)=='+') {
-			tmp_operator = tokenList.get(index).operator.substring(1);
-		}
-		else {
-			tmp_operator = tokenList.get(index).operator;
-		}
-		if ((instTab.instMap.get(tmp_operator)) != null) {
-			if (instTab.getFormat(tmp_operator) ==2) {
-				tokenList.get(index).setFlag(nFlag, 0);
-				tokenList.get(index).setFlag(iFlag, 0);
-			} 
-			//
-			else if ((tokenList.get(index).operand[0]!="") && tokenList.get(index).operand[0].charAt(0) == '#') {
-				tokenList.get(index).setFlag(nFlag, 0);
-				tokenList.get(index).setFlag(iFlag, 1);
+			break;
+		case Directive.EQU:
+			// EQU는 앞에서 정의된 symbol만 사용할 수 있으므로 pass1에서 바로 계산한다.
+			Expression expression = compile(operand[0]);
+			if (!onePass) {
+				if (equateCount == equates.length) {
+					equates = Arrays.copyOf(equates, equateCount * 2);
+					equateTokens = Arrays.copyOf(equateTokens, equateCount * 2);
+				}
+				equates[equateCount] = expression;
+				equateTokens[equateCount++] = tokens.size();
 			}
-			else if ((tokenList.get(index).operand[0]!="") && tokenList.get(index).operand[0].charAt(0) == '@') {
-				tokenList.get(index).setFlag(nFlag, 1);
-				tokenList.get(index).setFlag(iFlag, 0);
+			if (expression == null)
+				break;
+			token.location = expression.evaluate(locctr, symTab, externals, absoluteSymbols);
+			if (expression.error != null)
+				System.out.println("Expression error : " + operand[0] + " (" + expression.error + ")");
+			if (label != "") {
+				symTab.modifyName(label, token.location);
+				if (expression.relocation == 0)
+					absoluteSymbols.set(symTab.indexOf(label));
 			}
-			else {
-				tokenList.get(index).setFlag(nFlag, 1);
-				tokenList.get(index).setFlag(iFlag, 1);
+			break;
+		case Directive.EXTREF:
+			for (String name : operand)
+				if (name != "")
+					externals.putName(name, 0);
+			break;
+		case Directive.LTORG:
+		case Directive.END:
+			// 대기열에 있는 literal만 차례로 배치한다.
+			int first = pendingLiteral;
+			int more = 0;
+			for (; pendingLiteral < literalTab.size(); pendingLiteral++) {
+				literalTab.setLocation(pendingLiteral, location + more);
+				more += literalBytes[pendingLiteral].length;
 			}
-				if (tokenList.get(index).operand.length>1 && tokenList.get(index).operand[1].charAt(0) == 'X') {
-					tokenList.get(index).setFlag(xFlag, 1);
-				}
-				if (tokenList.get(index).operator.charAt(0) == '+') {
-					tokenList.get(index).setFlag(eFlag, 1);
-				}
-				for (int i=0; i<MAX_OPERAND; i++) {
-					if (tokenList.get(ref_index).operand.length>i && tokenList.get(ref_index).operand[i].equals(tokenList.get(index).operand[0])) {
-						//tokenList.get(index).nixbpe = 0;
-					}
-					else if (tokenList.get(index).operator.charAt(0) != '+' && tokenList.get(index).operand[0] != "") {
-						tokenList.get(index).setFlag(pFlag, 1);
-						break;
+			locctr += more;
+			token.byteSize += more;
+			putLiteralPool(first, pendingLiteral);
+			break;
+		}
+	}
+
+	/**
+	 * pass1이 끝난 뒤, PC relative로도 base relative로도 닿지 않는 format 3 명령어를 format 4로 바꾼다.
+	 *
+	 * 명령어 하나가 1 byte 늘어나면 그 뒤의 주소가 밀리고, 그 때문에 다른 명령어가 닿지 않게 될 수 있으므로 바꿀
+	 * 명령어가 없을 때까지 다음을 반복한다. 한 번 바꾼 명령어는 되돌리지 않으므로 반복은 끝나며, 필요한 곳만 format
+	 * 4가 된다.
+	 *
+	 * 1) 아직 format 3인 후보 명령어와 BASE, NOBASE만 차례로 보며 닿지 않는 명령어를 모두 format 4로 바꾼다.
+	 *
+	 * 2) 바뀐 명령어 중 가장 앞의 것부터 section 끝까지만 주소, label, EQU 값, literal 주소를 다시 정한다.
+	 *
+	 * 후보는 section 안의 symbol이나 literal을 참조하는 format 3 명령어와 '#' 뒤의 EQU 상수이다. 12 bit에
+	 * 들어가지 않는 '#' 10진수는 처음에 바로 바꾸고, 정의되지 않은 symbol을 참조하는 명령어는 바꾸지 않는다.
+	 *
+	 * @return : format 4로 바꾼 명령어 수
+	 */
+	int relax() {
+		int size = tokens.size();
+		int before = promoted;
+		int first = size;
+		// 후보 명령어와 BASE, NOBASE의 Token 번호와 종류, 참조하는 symbol 번호(literal이면 ~literal 번호)
+		int[] events = new int[64];
+		int[] types = new int[64];
+		int[] targets = new int[64];
+		int count = 0;
+		// LTORG, END의 Token 번호. k번째가 literalPools의 k번째 구간을 배치한다.
+		int[] pools = new int[poolCount];
+		int pool = 0;
+		for (int i = 0; i < size; i++) {
+			int type = tokens.kind(i);
+			int target = -1;
+			if (type == Directive.LTORG || type == Directive.END) {
+				if (pool < poolCount)
+					pools[pool++] = i;
+				continue;
+			}
+			if (type == Directive.BASE)
+				target = symTab.indexOf(tokens.operand(i, 0));
+			else if (type != Directive.NOBASE) {
+				type = tokens.encoder(i);
+				String operand = type == Encoder.NONE ? "" : tokens.operand(i, 0);
+				if (type == Encoder.FORMAT3_IMMEDIATE) {
+					if (Integer.parseInt(operand, 1, operand.length(), 10) > 4095) {
+						promote(i);
+						first = Math.min(first, i);
 					}
+					continue;
 				}
-				if (tokenList.get(index).operator.charAt(0) == '#') {
-					tokenList.get(index).setFlag(pFlag, 0);
+				if (type != Encoder.FORMAT3)
+					continue;
+				int start = symbolStart(operand);
+				target = symTab.indexOf(operand, start);
+				if (target >= 0 && operand.charAt(0) == '#' && absoluteSymbols.get(target))
+					type = Encoder.FORMAT3_IMMEDIATE;
+				else if (target < 0) {
+					target = ~literalTab.indexOf(operand, start);
+					if (target == 0)
+						continue;
 				}
-					
-					switch (tokenList.get(index).byteSize) {
-					case 2:
-						tmp = instTab.getOpcode(tmp_operator) << 8;
-						
-						for (int i =0; i<tokenList.get(index).operand.length; i++) {
-
-							if (tokenList.get(index).operand[i].equals("A")) {
-								register|= AReg;
-							} else if (tokenList.get(index).operand[i].equals("X")) {
-								register|= XReg;
-							} else if (tokenList.get(index).operand[i].equals("L")) {
-								register|= LReg;
-							} else if (tokenList.get(index).operand[i].equals("B")) {
-								register|= BReg;
-							} else if (tokenList.get(index).operand[i].equals("S")) {
-								register|= SReg;
-							} else if (tokenList.get(index).operand[i].equals("T")) {
-								register|= TReg;
-							} else if (tokenList.get(index).operand[i].equals("F")) {
-								register|= FReg;
-							} else if (tokenList.get(index).operand[i].equals("PC")) {
-								register|= PCReg;
-							} else if (tokenList.get(index).operand[i].equals("SW")) {
-								register|= SWReg;
-							}
-							if (i == 0)
-								register = register<<4;
-							
-						}
-						tmp |= register;
-						code = String.format("%04X", tmp).toUpperCase();
-						break;
-					case 3:
-						tmp |= instTab.getOpcode(tmp_operator) << 16;
-						tmp|=tokenList.get(index).getFlag(nFlag) + tokenList.get(index).getFlag(iFlag)<<12;
-						//System.out.println("This"+tokenList.get(index).operand[0]);
-						if (tokenList.get(index).operand[0]!="" && tokenList.get(index).operand[0].charAt(0) == '#') {
-							tokenList.get(index).setFlag(pFlag, 0);
-							tmp|=tokenList.get(index).getFlag(pFlag) <<12;
-							tmp |= Integer.parseInt(tokenList.get(index).operand[0].substring(1));
-						}
-						else {
-							tokenList.get(index).setFlag(pFlag, 1);
-							if ((result = symTab.search(tokenList.get(index).operand[0])) >= 0){
-								tmp|=tokenList.get(index).getFlag(pFlag) <<12;
-								tmp |= result - (tokenList.get(index).location + tokenList.get(index).byteSize) & 0xFFF; 
-								
-							}
-							else if((result = literalTab.search(tokenList.get(index).operand[0])) >= 0){
-								tmp|=tokenList.get(index).getFlag(pFlag) <<12;
-								tmp |= result - (tokenList.get(index).location + tokenList.get(index).byteSize) & 0xFFF; 
-							}
-							else if (tokenList.get(index).operator.equals("RSUB")){
-								tokenList.get(index).setFlag(pFlag, 0);
-								tmp|=tokenList.get(index).getFlag(pFlag) <<12;
-							}
-							else {
-								tmp|=tokenList.get(index).getFlag(pFlag) <<12;
-							}
-						}
-						
-						code = String.format("%06X", tmp).toUpperCase();
-								//+ Integer.toHexString (tokenList.get(index).getFlag(xFlag) + tokenList.get(index).getFlag(bFlag)
-										//+ tokenList.get(index).getFlag(pFlag) + tokenList.get(index).getFlag(eFlag)<<8);
-						break;
-					case 4:
-						tokenList.get(index).setFlag(TokenTable.eFlag, 1);
-						tmp = instTab.getOpcode(tmp_operator)<<24;
-						tmp|=tokenList.get(index).getFlag(nFlag) + tokenList.get(index).getFlag(iFlag) 
-								+tokenList.get(index).getFlag(xFlag) + tokenList.get(index).getFlag(bFlag)
-								+ tokenList.get(index).getFlag(pFlag) + tokenList.get(index).getFlag(eFlag) <<20;
-						code = String.format("%08X", tmp).toUpperCase();
-						modifTab.add(new Modification (tokenList.get(index).location+1, 5, '+', tokenList.get(index).operand[0]));
-					}
-		}
-		else if (tokenList.get(index).operator.equals("BYTE")) {
-			StringTokenizer token= new StringTokenizer(tokenList.get(index).operand[0], "'");
-			if (token.nextToken().equals("X")) 
-				tmp = Integer.parseInt(token.nextToken(), 16);
-			else {
-				String value = token.nextToken();
-				for (int i=0; i<value.length(); i++) {
-					tmp = tmp << 8;
-					tmp |= value.charAt(i);
-				}
-			}
-			switch (tokenList.get(index).byteSize) {
-			case 1:
-				code = String.format("%02X", tmp).toUpperCase();
-				break;
-			case 2:
-				code = String.format("%04X", tmp).toUpperCase();
-				break;
-			case 3:
-				code = String.format("%06X", tmp).toUpperCase();
-				break;
-			case 4:
-				code = String.format("%08X", tmp).toUpperCase();
-				break;
 			}
-		}
-		else if (tokenList.get(index).operator.equals("WORD")) {
-			if (tokenList.get(index).operand[0].contains("-")) {
-				StringTokenizer token= new StringTokenizer(tokenList.get(index).operand[0], "-");
-				modifTab.add(new Modification (tokenList.get(index).location, 6, '+', token.nextToken()));
-				modifTab.add(new Modification (tokenList.get(index).location, 6, '-', token.nextToken()));
-				code = "000000";
+			if (count == events.length) {
+				events = Arrays.copyOf(events, count * 2);
+				types = Arrays.copyOf(types, count * 2);
+				targets = Arrays.copyOf(targets, count * 2);
 			}
+			events[count] = i;
+			types[count] = type;
+			targets[count] = target;
+			count++;
 		}
-		
-		else if (tokenList.get(index).operator.equals("LTORG")||
-				tokenList.get(index).operator.equals("END")) {
-			for (String label : literalTab.label) {
-				switch (label.charAt(1)) {
-				case 'X':
-					tmp = Integer.parseInt(label.substring(3, label.length()-1), 16);
+
+		while (true) {
+			int base = -1;
+			int kept = 0;
+			for (int k = 0; k < count; k++) {
+				int i = events[k];
+				int target = targets[k];
+				boolean fits = true;
+				switch (types[k]) {
+				case Directive.BASE:
+					base = target >= 0 ? symTab.getLocation(target) : -1;
 					break;
-				case 'C':
-					for (int i=3; i<label.length()-1; i++) {
-						tmp = tmp << 8;
-						tmp |= label.charAt(i);
-					}
+				case Directive.NOBASE:
+					base = -1;
 					break;
-				default :
-					tmp = Integer.parseInt(label.substring(1), 16);
+				case Encoder.FORMAT3_IMMEDIATE:
+					int value = symTab.getLocation(target);
+					fits = value >= 0 && value <= 4095;
 					break;
+				default:
+					int location = target >= 0 ? symTab.getLocation(target) : literalTab.getLocation(~target);
+					int pc = tokens.location(i) + 3;
+					fits = location < 0 || reachesPc(location, pc) || reachesBase(location, base);
 				}
-				switch (tokenList.get(index).byteSize) {
-				case 1:
-					code = String.format("%02X", tmp).toUpperCase();
-					break;
-				case 2:
-					code = String.format("%04X", tmp).toUpperCase();
-					break;
-				case 3:
-					code = String.format("%06X", tmp).toUpperCase();
-					break;
-				case 4:
-					code = String.format("%08X", tmp).toUpperCase();
-					break;
-				default : 
-					code += String.format("%06X", tmp).toUpperCase();
-					break;
+				if (!fits) {
+					promote(i);
+					first = Math.min(first, i);
+					continue;
 				}
+				events[kept] = i;
+				types[kept] = types[k];
+				targets[kept] = target;
+				kept++;
 			}
-			
+			count = kept;
+			if (first == size)
+				break;
+			relocate(first, pools);
+			relaxPasses++;
+			first = size;
 		}
-		
-		tokenList.get(0).location += tokenList.get(index).byteSize; //because Header's location is always 0
-		tokenList.get(index).objectCode = code;
+		return promoted - before;
 	}
 
 	/**
-	 * index번호에 해당하는 object code를 리턴한다.
-	 * 
-	 * @param index
-	 * @return : object code
+	 * index번째 format 3 명령어를 format 4로 바꾼다. 주소는 relocate()가 다시 정한다.
 	 */
-	public String getObjectCode(int index) {
-		return tokenList.get(index).objectCode;
+	private void promote(int index) {
+		Token token = cursor;
+		tokens.load(index, token);
+		token.byteSize = 4;
+		token.encoder = Encoder.FORMAT4;
+		token.nixbpe = (char) (token.nixbpe & (nFlag | iFlag | xFlag) | eFlag);
+		tokens.store(index, token);
+		promoted++;
 	}
 
-}
+	/**
+	 * from번째 Token부터 section 끝까지 byteSize를 차례로 더해 주소를 다시 정하고, 그 사이의 label, EQU, literal
+	 * 주소와 locctr를 고친다. from번째 Token은 크기가 바뀐 명령어이므로 그 주소는 그대로이다.
+	 *
+	 * @param from  : 크기가 바뀐 Token 중 가장 앞의 것
+	 * @param pools : LTORG, END의 Token 번호 (relax())
+	 */
+	private void relocate(int from, int[] pools) {
+		int location = tokens.location(from);
+		int pool = Arrays.binarySearch(pools, from);
+		if (pool < 0)
+			pool = ~pool;
+		int equate = Arrays.binarySearch(equateTokens, 0, equateCount, from);
+		if (equate < 0)
+			equate = ~equate;
+		for (int i = from; i < tokens.size(); i++) {
+			int kind = tokens.kind(i);
+			int value = location;
+			if (kind == Directive.EQU) {
+				// 분석에 실패한 식은 null이며, pass1에서 이미 오류를 출력했다.
+				Expression expression = equates[equate++];
+				if (expression != null)
+					value = expression.evaluate(location, symTab, externals, absoluteSymbols);
+			}
+			else if ((kind == Directive.LTORG || kind == Directive.END) && pool < pools.length) {
+				int more = 0;
+				for (int j = literalPools[2 * pool]; j < literalPools[2 * pool + 1]; j++) {
+					literalTab.setLocation(j, location + more);
+					more += literalBytes[j].length;
+				}
+				pool++;
+			}
+			tokens.setLocation(i, value);
+			String label = tokens.label(i);
+			if (!label.isEmpty())
+				symTab.modifyName(label, value);
+			location += tokens.byteSize(i);
+		}
+		locctr = location;
+	}
 
-/**
- * 각 라인별로 저장된 코드를 단어 단위로 분할한 후 의미를 해석하는 데에 사용되는 변수와 연산을 정의한다. 의미 해석이 끝나면 pass2에서
- * object code로 변형되었을 때의 바이트 코드 역시 저장한다.
- */
-class Token {
-	// 의미 분석 단계에서 사용되는 변수들
-	int location;
-	String label;
-	String operator;
-	String[] operand;
-	String comment;
-	char nixbpe;
-
-	// object code 생성 단계에서 사용되는 변수들
-	String objectCode;
-	int byteSize;
-	char record;
+	/**
+	 * tokens에서 index에 해당하는 Token을 리턴한다. 저장된 내용의 복사본이므로 값을 바꾸어도 반영되지 않는다.
+	 * 
+	 * @param index
+	 * @return : index번호에 해당하는 코드를 분석한 Token 클래스
+	 */
+	public Token getToken(int index) {
+		Token token = new Token("");
+		tokens.load(index, token);
+		token.operand = token.operand.clone();
+		return token;
+	}
 
 	/**
-	 * 클래스를 초기화 하면서 바로 line의 의미 분석을 수행한다.
+	 * Pass2 과정에서 사용한다. instruction table, symbol table 등을 참조하여 objectcode를 생성하고, 이를
+	 * 저장한다.
+	 * 
+	 * object code는 String이 아니라 section의 code 배열에 byte 단위로 저장되며, Token에는 그 위치(codeOffset)와
+	 * 길이(codeLength)만 기록된다. H, D, R record는 출력 단계에서 Token과 symbol table로부터 직접 만든다.
 	 * 
-	 * @param line 문장단위로 저장된 프로그램 코드
+	 * @param index
 	 */
-	public Token(String line) {
-		// initialize ???
-		this.location = Assembler.locctr;
-		this.label = "";
-		this.operator = "";
-		this.comment = "";
-		this.operand = new String[1];
-		this.operand[0] = "";
-		parsing(line);
-		
-		this.objectCode = "";
-		this.byteSize = 0;
+	public void makeObjectCode(int index) {
+		// ...
+		Token token = cursor;
+		tokens.load(index, token);
+		encode(token, index);
+		tokens.store(index, token);
+		tokens.setLocation(0, tokens.location(0) + token.byteSize); //because Header's location is always 0
+	}
+
+	/**
+	 * makeObjectCode()에서 Token을 읽고 저장하는 것을 제외한 부분. token의 object code를 code 배열에 추가하고
+	 * record 종류, codeOffset, codeLength를 token에 기록한다. 명령어는 pass1에서 고른 encoder(Encoder)의 함수
+	 * 하나로 만들어진다.
+	 *
+	 * one-pass 모드에서는 아직 정의되지 않은 symbol을 참조하는 format 3 명령어의 이름을 unresolved에, 계산할 수
+	 * 없는 WORD의 식을 deferred에 남긴다.
+	 *
+	 * @param token : pass1이 끝난 Token
+	 * @param index : section 안에서 Token의 번호
+	 */
+	void encode(Token token, int index) {
+		token.codeOffset = codeSize;
+		unresolved = null;
+		deferred = null;
+		if (index == 0) {
+			nextPool = 0;
+			nextExpression = 0;
+			base = -1;
+		}
+		switch (token.encoder) {
+		case Encoder.FORMAT1:
+			putCode(InstTable.opcodeOf(token.inst), 1);
+			break;
+		case Encoder.FORMAT2:
+			putCode(InstTable.opcodeOf(token.inst) << 8 | token.registers, 2);
+			break;
+		case Encoder.FORMAT3:
+			encodeFormat3(token);
+			break;
+		case Encoder.FORMAT3_IMMEDIATE:
+			encodeImmediate(token);
+			break;
+		case Encoder.FORMAT3_NO_OPERAND:
+			putCode(InstTable.opcodeOf(token.inst) << 16 | (token.nixbpe & (nFlag | iFlag)) << 12, 3);
+			break;
+		case Encoder.FORMAT4:
+			encodeFormat4(token);
+			break;
+		default:
+			encodeDirective(token, index);
+		}
 		
-		this.nixbpe = 0;
-		this.record ='T';
+		token.codeLength = codeSize - token.codeOffset;
 	}
 
 	/**
-	 * line의 실질적인 분석을 수행하는 함수. Token의 각 변수에 분석한 결과를 저장한다.
-	 * 
-	 * @param line 문장단위로 저장된 프로그램 코드.
+	 * 주소 operand를 가진 format 3 명령어. operand가 symbol이나 배치된 literal이면 displacement()로 PC relative나
+	 * base relative displacement를 넣고, 찾지 못하면 displacement를 0으로 두고 unresolved에 남긴다. (operand를
+	 * 받지 않는 명령어는 p bit도 두지 않는다) '#' 뒤의 symbol이 EQU로 정의된 상수이면 그 값을 그대로 넣는다.
 	 */
-	public void parsing(String line) {
-		String[]token  =line.split("\t");
-		String[]tmp;
-		for (int type = 0; type<token.length; type++) {
-			if (token[type].isEmpty())
-				continue;
-			switch (type) {
-			case 0: //label
-				this.label = token[0];
-				break;
-			case 1: //operator
-				this.operator = token[1];
+	private void encodeFormat3(Token token) {
+		int inst = token.inst;
+		String operand = token.operand[0];
+		int start = symbolStart(operand);
+		int code = InstTable.opcodeOf(inst) << 16 | (token.nixbpe & (nFlag | iFlag | xFlag)) << 12;
+		int symbol = symTab.indexOf(operand, start);
+		int target = symbol >= 0 ? symTab.getLocation(symbol) : literalLocation(operand, start);
+		if (symbol >= 0 && (token.nixbpe & (nFlag | iFlag)) == iFlag && absoluteSymbols.get(symbol))
+			code |= immediate(target, operand);
+		else if (target >= 0)
+			code |= displacement(target, token.location + 3, base, operand);
+		else if (InstTable.operandCountOf(inst) != 0) {
+			code |= pFlag << 12;
+			unresolved = operand.substring(start);
+		}
+		putCode(code, 3);
+	}
+
+	/**
+	 * '#'으로 시작하는 10진수 operand를 displacement 자리에 그대로 넣는다.
+	 */
+	private void encodeImmediate(Token token) {
+		String operand = token.operand[0];
+		putCode(InstTable.opcodeOf(token.inst) << 16 | iFlag << 12
+				| immediate(Integer.parseInt(operand, 1, operand.length(), 10), operand), 3);
+	}
+
+	/**
+	 * format 4 명령어. EXTREF symbol이면 주소를 0으로 두고 loader가 채우도록 그 이름으로 M record를 남긴다. section
+	 * 안의 symbol이나 literal이면 주소를 넣고 section 이름으로 M record를 남기며, EQU 상수와 '#' 뒤의 10진수는
+	 * 값만 넣는다.
+	 *
+	 * one-pass 모드에서 아직 정의되지 않은 symbol은 section 안의 주소로 보고 unresolved에 남긴다. M record는 주소를
+	 * 채울 때 OnePassAssembler가 추가한다.
+	 */
+	private void encodeFormat4(Token token) {
+		String operand = token.operand[0];
+		int code = InstTable.opcodeOf(token.inst) << 24 | token.nixbpe << 20;
+		if (operand.startsWith("#") && Encoder.isNumber(operand)) {
+			putCode(code | Integer.parseInt(operand, 1, operand.length(), 10) & 0xFFFFF, 4);
+			return;
+		}
+		int start = symbolStart(operand);
+		boolean external = externals.indexOf(operand, start) >= 0;
+		int symbol = external ? -1 : symTab.indexOf(operand, start);
+		int target = external ? -1 : symbol >= 0 ? symTab.getLocation(symbol) : literalLocation(operand, start);
+		if (target >= 0) {
+			putCode(code | target & 0xFFFFF, 4);
+			if (symbol < 0 || !absoluteSymbols.get(symbol))
+				modifTab.add(new Modification (token.location+1, 5, '+', symTab.getName(0)));
+			return;
+		}
+		putCode(code, 4);
+		String name = operand.substring(start);
+		if (onePass && !external)
+			unresolved = name;
+		else
+			modifTab.add(new Modification (token.location+1, 5, '+', name));
+	}
+
+	/**
+	 * target을 가리키는 format 3의 p, b flag와 displacement. PC relative로 닿으면 PC relative를, 닿지 않고 BASE가
+	 * 있으면 base relative를 사용한다. 둘 다 닿지 않으면 오류를 출력하고 PC relative의 하위 12 bit를 넣는다.
+	 *
+	 * @param target  : 참조하는 주소
+	 * @param pc      : 다음 명령어의 주소
+	 * @param base    : base register의 값. 없으면 -1
+	 * @param operand : 오류 메시지에 사용할 operand
+	 * @return : (flag << 12) | displacement
+	 */
+	int displacement(int target, int pc, int base, String operand) {
+		if (reachesPc(target, pc))
+			return pFlag << 12 | (target - pc) & 0xFFF;
+		if (reachesBase(target, base))
+			return bFlag << 12 | target - base;
+		System.out.println("Addressing error : " + operand + " (out of range at "
+				+ Integer.toHexString(pc - 3).toUpperCase() + ")");
+		return pFlag << 12 | (target - pc) & 0xFFF;
+	}
+
+	static boolean reachesPc(int target, int pc) {
+		return target - pc >= -2048 && target - pc <= 2047;
+	}
+
+	static boolean reachesBase(int target, int base) {
+		return base >= 0 && target - base >= 0 && target - base <= 4095;
+	}
+
+	/**
+	 * format 3의 12 bit에 넣는 immediate 값. 들어가지 않으면 오류를 출력하고 하위 12 bit를 넣는다.
+	 */
+	private static int immediate(int value, String operand) {
+		if (value < 0 || value > 4095)
+			System.out.println("Addressing error : " + operand + " (out of range)");
+		return value & 0xFFF;
+	}
+
+	/**
+	 * @return : operand에서 symbol 이름이 시작되는 위치. '#'이나 '@'으로 시작하면 1, 아니면 0
+	 */
+	private static int symbolStart(String operand) {
+		return operand.startsWith("#") || operand.startsWith("@") ? 1 : 0;
+	}
+
+	/**
+	 * @return : operand의 start번째 글자부터를 이름으로 하는 literal의 주소. 없으면 -1
+	 */
+	private int literalLocation(String operand, int start) {
+		int literal = literalTab.indexOf(operand, start);
+		return literal >= 0 ? literalTab.getLocation(literal) : -1;
+	}
+
+	/**
+	 * 명령어가 아닌 줄. START, CSECT, EXTDEF, EXTREF는 record 종류만 정하고, BYTE, WORD, LTORG, END는 상수의
+	 * object code를 추가한다.
+	 */
+	private void encodeDirective(Token token, int index) {
+		switch (token.kind) {
+		case Directive.START:
+		case Directive.CSECT:
+			token.record = 'H';
+			break;
+		case Directive.EXTDEF:
+			def_index = index;
+			token.record = 'D';
+			break;
+		case Directive.EXTREF:
+			ref_index = index;
+			token.record = 'R';
+			break;
+		case Directive.BYTE:
+			putConstant(token.operand[0], 0);
+			break;
+		case Directive.WORD: {
+			Expression expression = nextExpression < expressions.size() ? expressions.get(nextExpression++) : null;
+			if (onePass) {
+				// 식은 다시 사용하지 않으므로 one-pass 모드에서는 바로 버린다.
+				expressions.clear();
+				nextExpression = 0;
+			}
+			if (expression == null) {
+				putCode(0, 3);
 				break;
-			case 2://operand
-				tmp = token[2].split(",");
-				this.operand = new String[tmp.length];
-				for (int i = 0; i<tmp.length; i++)
-					this.operand[i] = tmp[i];
+			}
+			if (onePass && !expression.isDefined(symTab, externals)) {
+				deferred = expression;
+				putCode(0, 3);
 				break;
-			case 3: //comment
-				this.comment = token[3];
 			}
+			putCode(evaluateWord(expression, token.location), 3);
+			break;
+		}
+		case Directive.BASE:
+			base = symTab.search(token.operand[0]);
+			break;
+		case Directive.NOBASE:
+			base = -1;
+			break;
+		case Directive.LTORG:
+		case Directive.END:
+			// pass1에서 이 LTORG/END가 배치한 literal 구간의 미리 변환된 object code를 출력한다.
+			if (nextPool < poolCount) {
+				for (int j = literalPools[2 * nextPool]; j < literalPools[2 * nextPool + 1]; j++)
+					putBytes(literalBytes[j]);
+				nextPool++;
+			}
+			break;
 		}
 	}
 
 	/**
-	 * n,i,x,b,p,e flag를 설정한다.
-	 * 
-	 * 
-	 * 사용 예 : setFlag(nFlag, 1) 또는 setFlag(TokenTable.nFlag, 1)
-	 * 
-	 * @param flag  : 원하는 비트 위치
-	 * @param value : 집어넣고자 하는 값. 1또는 0으로 선언한다.
+	 * value의 하위 length byte를 big-endian 순서로 code 배열에 추가한다.
 	 */
-	public void setFlag(int flag, int value) {
-		// ...
-		
-		if (value == 1)
-			this.nixbpe |= flag;
-		else {
-			int digit = (int) (Math.log(flag)/Math.log(2));
-			this.nixbpe &= ~(1 << digit);
+	private void putCode(int value, int length) {
+		ensureCode(length);
+		for (int shift = (length - 1) * 8; shift >= 0; shift -= 8)
+			code[codeSize++] = (byte) (value >>> shift);
+	}
+
+	/**
+	 * WORD의 식을 계산하고 필요한 M record를 modifTab에 추가한다. 외부 symbol은 계수만큼, section 안의 재배치
+	 * 값은 section 이름으로 M record를 하나 남긴다.
+	 *
+	 * @param expression : WORD의 식
+	 * @param location   : WORD의 주소
+	 * @return : 식의 값
+	 */
+	int evaluateWord(Expression expression, int location) {
+		int value = expression.evaluate(location, symTab, externals, absoluteSymbols);
+		if (expression.error != null)
+			System.out.println("Expression error : " + expression.text + " (" + expression.error + ")");
+		for (int i = 0; i < expression.names.length; i++) {
+			if (!expression.isExternal(i, symTab, externals))
+				continue;
+			int coefficient = expression.coefficients[i];
+			for (int k = 0; k < Math.abs(coefficient); k++)
+				modifTab.add(new Modification (location, 6, coefficient > 0 ? '+' : '-', expression.names[i]));
 		}
+		if (expression.relocation == 1)
+			modifTab.add(new Modification (location, 6, '+', symTab.getName(0)));
+		return value;
 	}
 
 	/**
-	 * 원하는 flag들의 값을 얻어올 수 있다. flag의 조합을 통해 동시에 여러개의 플래그를 얻는 것 역시 가능하다.
-	 * 
-	 * 사용 예 : getFlag(nFlag) 또는 getFlag(nFlag|iFlag)
-	 * 
-	 * @param flags : 값을 확인하고자 하는 비트 위치
-	 * @return : 비트위치에 들어가 있는 값. 플래그별로 각각 32, 16, 8, 4, 2, 1의 값을 리턴할 것임.
+	 * 식을 분석한다. 문법 오류가 있으면 메시지를 출력하고 null을 리턴한다.
 	 */
+	private static Expression compile(String text) {
+		try {
+			return Expression.compile(text);
+		} catch (IllegalArgumentException e) {
+			System.out.println("Expression error : " + e.getMessage());
+			return null;
+		}
+	}
 
-	public int getFlag(int flags) {
-		return nixbpe & flags;
+	/**
+	 * BYTE의 operand나 literal이 나타내는 상수를 code 배열에 추가한다. C'..'는 문자 그대로, X'..'는 두 글자씩
+	 * hex로, 그 외(=3 과 같은 literal)는 hex 값을 3 byte로 저장한다.
+	 *
+	 * @param constant : 상수 문자열
+	 * @param start    : 형식 문자('C', 'X')가 시작되는 위치. literal이면 '='를 건너뛰도록 1
+	 */
+	private void putConstant(String constant, int start) {
+		putBytes(decodeConstant(constant, start));
+	}
+
+	/**
+	 * 상수 문자열을 object code byte 배열로 변환한다. 규칙은 putConstant()와 같다.
+	 */
+	static byte[] decodeConstant(String constant, int start) {
+		int end = constant.length() - 1;
+		byte[] bytes;
+		switch (constant.charAt(start)) {
+		case 'X':
+			bytes = new byte[(end - start - 2) / 2];
+			for (int i = start + 2, n = 0; i + 1 <= end - 1; i += 2)
+				bytes[n++] = (byte) (Character.digit(constant.charAt(i), 16) << 4
+						| Character.digit(constant.charAt(i + 1), 16));
+			return bytes;
+		case 'C':
+			bytes = new byte[end - start - 2];
+			for (int i = start + 2, n = 0; i < end; i++)
+				bytes[n++] = (byte) constant.charAt(i);
+			return bytes;
+		default:
+			int value = Integer.parseInt(constant, start, constant.length(), 16);
+			return new byte[] { (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+		}
+	}
+
+	private void putBytes(byte[] bytes) {
+		ensureCode(bytes.length);
+		System.arraycopy(bytes, 0, code, codeSize, bytes.length);
+		codeSize += bytes.length;
+	}
+
+	private void putLiteralBytes(int index, byte[] bytes) {
+		if (index >= literalBytes.length)
+			literalBytes = Arrays.copyOf(literalBytes, Math.max(literalBytes.length * 2, index + 1));
+		literalBytes[index] = bytes;
+	}
+
+	private void putLiteralPool(int first, int end) {
+		if (2 * poolCount + 2 > literalPools.length)
+			literalPools = Arrays.copyOf(literalPools, literalPools.length * 2);
+		literalPools[2 * poolCount] = first;
+		literalPools[2 * poolCount + 1] = end;
+		poolCount++;
 	}
-	
-}
 
-class Modification{
-	int location;
-	int length;
-	char sign;
-	String operand;
-	public Modification (int location, int length, char sign, String operand) {
-		this.location = location;
-		this.length = length;
-		this.sign = sign;
-		this.operand = operand;
+	private void ensureCode(int length) {
+		if (codeSize + length > code.length)
+			code = Arrays.copyOf(code, Math.max(code.length * 2, codeSize + length));
+	}
+
+	/**
+	 * index번호에 해당하는 object code를 리턴한다. hex 문자열을 새로 만들기 때문에 출력 단계나 디버깅 용도로만
+	 * 사용한다. H, D, R record는 ""를 리턴한다.
+	 * 
+	 * @param index
+	 * @return : object code
+	 */
+	public String getObjectCode(int index) {
+		int offset = tokens.codeOffset(index);
+		int length = tokens.codeLength(index);
+		StringBuilder hex = new StringBuilder(length * 2);
+		for (int i = offset; i < offset + length; i++) {
+			hex.append(Character.toUpperCase(Character.forDigit((code[i] >> 4) & 0xF, 16)));
+			hex.append(Character.toUpperCase(Character.forDigit(code[i] & 0xF, 16)));
+		}
+		return hex.toString();
 	}
 
 }
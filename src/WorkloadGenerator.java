@@ -0,0 +1,221 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 성능 측정을 위한 SIC/XE 소스 생성기. input.txt와 같은 형식(label, operator, operand, comment를 tab으로 구분)의
+ * 프로그램을 원하는 크기로 만든다.
+ *
+ * 사용법 : java WorkloadGenerator 출력파일 [key=value...]
+ *
+ * 설정 가능한 값 (괄호 안은 기본값)
+ * sections(10) : section(START, CSECT) 수
+ * lines(1000) : section 당 본문 줄 수. 본문의 모든 줄은 L번호 형태의 label을 가진다.
+ * extdef(4) : section 당 EXTDEF symbol 수. EXTDEF symbol 이름은 D, 36진수 section 번호, _, 번호로 만들어 object
+ * program의 D record 형식(6글자)에 맞춘다. (46656개 section, section 당 10개까지)
+ * extref(4) : section 당 EXTREF symbol 수 (다른 section의 EXTDEF에서 고른다)
+ * literal(10) : format 3 명령어가 literal(=C'..', =X'..')을 사용할 확률(%)
+ * ltorg(100) : LTORG를 넣는 간격(줄)
+ * f2(20), f3(60), f4(10) : format 2, 3, 4 명령어의 비율(%). 나머지는 RESB/RESW, BYTE/WORD, EQU 줄이다.
+ * f4ext(50) : format 4 명령어가 다른 section의 EXTDEF symbol을 참조할 확률(%). 나머지는 section 안의 label이다.
+ * window(50) : 명령어가 참조하는 section 안의 label의 최대 거리(줄). 기본값은 PC relative 범위를 넘지 않으며, 크게
+ * 하면 닿지 않는 참조가 생기므로 Assembler --relax를 측정할 때 사용한다.
+ * seed(1) : 난수 seed. 같은 설정이면 같은 소스가 만들어진다.
+ */
+public class WorkloadGenerator {
+	private static final String[] FORMAT2 = { "CLEAR\tX", "CLEAR\tA", "CLEAR\tS", "COMPR\tA,S", "TIXR\tT", "ADDR\tS,A" };
+	private static final String[] FORMAT3 = { "LDA", "STA", "LDT", "STX", "COMP", "J", "JEQ", "JLT", "STL", "LDCH" };
+	private static final String[] FORMAT4 = { "+JSUB", "+LDA", "+STA", "+LDT", "+STX", "+LDCH" };
+	private static final String[] LITERALS = { "=C'EOF'", "=X'05'", "=C'AB'", "=X'F1'", "=C'Z'", "=X'0A0B'" };
+
+	int sections = 10;
+	int lines = 1000;
+	int extdef = 4;
+	int extref = 4;
+	int literal = 10;
+	int ltorg = 100;
+	int f2 = 20;
+	int f3 = 60;
+	int f4 = 10;
+	int f4ext = 50;
+	int window = 50;
+	long seed = 1;
+
+	/* 현재 section에서 주소(재배치 값)를 가지는 label의 번호. EQU, WORD의 차는 이 label들로만 만든다. */
+	private int[] relocatable = new int[16];
+	private int relocatableCount;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage : java WorkloadGenerator output [key=value...]");
+			return;
+		}
+		WorkloadGenerator generator = new WorkloadGenerator();
+		for (int i = 1; i < args.length; i++)
+			generator.set(args[i]);
+		try (Writer out = new BufferedWriter(new FileWriter(args[0]))) {
+			long count = generator.write(out);
+			System.out.println(args[0] + " : " + count + " lines");
+		}
+	}
+
+	/**
+	 * key=value 형태의 설정 하나를 적용한다.
+	 */
+	void set(String option) {
+		int eq = option.indexOf('=');
+		String key = option.substring(0, eq);
+		long value = Long.parseLong(option.substring(eq + 1));
+		switch (key) {
+		case "sections": sections = (int) value; break;
+		case "lines": lines = (int) value; break;
+		case "extdef": extdef = (int) value; break;
+		case "extref": extref = (int) value; break;
+		case "literal": literal = (int) value; break;
+		case "ltorg": ltorg = (int) value; break;
+		case "f2": f2 = (int) value; break;
+		case "f3": f3 = (int) value; break;
+		case "f4": f4 = (int) value; break;
+		case "f4ext": f4ext = (int) value; break;
+		case "window": window = (int) value; break;
+		case "seed": seed = value; break;
+		default:
+			throw new IllegalArgumentException("unknown option : " + key);
+		}
+	}
+
+	/**
+	 * 설정에 맞는 프로그램을 out에 쓴다.
+	 *
+	 * @return : 쓴 줄 수
+	 */
+	long write(Writer out) throws IOException {
+		Random random = new Random(seed);
+		long count = 0;
+		for (int s = 0; s < sections; s++) {
+			out.write("SEC" + s + (s == 0 ? "\tSTART\t0\n" : "\tCSECT\n"));
+			count++;
+			if (extdef > 0) {
+				out.write("\tEXTDEF\t" + symbolList(definePrefix(s), extdef) + "\n");
+				count++;
+			}
+			if (extref > 0 && sections > 1) {
+				StringBuilder refs = new StringBuilder();
+				for (int k = 0; k < extref; k++) {
+					int target = (s + 1 + k % (sections - 1)) % sections;
+					if (k > 0)
+						refs.append(',');
+					refs.append(definePrefix(target)).append(k % Math.max(1, extdef));
+				}
+				out.write("\tEXTREF\t" + refs + "\n");
+				count++;
+			}
+			for (int k = 0; k < extdef; k++) {
+				out.write(definePrefix(s) + k + "\tEQU\t*\n");
+				count++;
+			}
+			relocatableCount = 0;
+			for (int n = 0; n < lines; n++) {
+				out.write(line(random, s, n));
+				count++;
+				if (ltorg > 0 && n % ltorg == ltorg - 1) {
+					out.write("\tLTORG\n");
+					count++;
+				}
+			}
+		}
+		out.write("\tEND\tL0\n");
+		return count + 1;
+	}
+
+	/**
+	 * section s의 n번째 본문 줄을 만든다. 상수를 정의하는 EQU가 아니면 그 label을 relocatable에 추가한다.
+	 */
+	private String line(Random random, int s, int n) {
+		String line = body(random, s, n);
+		if (line.indexOf("\tEQU\t") < 0 || line.endsWith("\tEQU\t*\n")) {
+			if (relocatableCount == relocatable.length)
+				relocatable = Arrays.copyOf(relocatable, relocatableCount * 2);
+			relocatable[relocatableCount++] = n;
+		}
+		return line;
+	}
+
+	private String body(Random random, int s, int n) {
+		String label = "L" + n;
+		int kind = random.nextInt(100);
+		if (kind < f2)
+			return label + "\t" + FORMAT2[random.nextInt(FORMAT2.length)] + "\n";
+		if (kind < f2 + f3) {
+			String op = FORMAT3[random.nextInt(FORMAT3.length)];
+			int mode = random.nextInt(100);
+			if (mode < literal)
+				return label + "\t" + op + "\t" + LITERALS[random.nextInt(LITERALS.length)] + "\n";
+			if (mode < literal + 10)
+				return label + "\t" + op + "\t#" + random.nextInt(4096) + "\n";
+			if (mode < literal + 15)
+				return label + "\t" + op + "\t@" + nearby(random, n) + "\n";
+			if (mode < literal + 17)
+				return label + "\tRSUB\n";
+			return label + "\t" + op + "\t" + nearby(random, n) + "\tcomment for " + label + "\n";
+		}
+		if (kind < f2 + f3 + f4) {
+			String op = FORMAT4[random.nextInt(FORMAT4.length)];
+			String target = extref > 0 && sections > 1 && random.nextInt(100) < f4ext
+					? definePrefix((s + 1) % sections) + "0" : nearby(random, n);
+			return label + "\t" + op + "\t" + target + (random.nextInt(4) == 0 ? ",X" : "") + "\n";
+		}
+		switch (random.nextInt(5)) {
+		case 0:
+			return label + "\tRESB\t" + (1 + random.nextInt(64)) + "\n";
+		case 1:
+			return label + "\tRESW\t" + (1 + random.nextInt(16)) + "\n";
+		case 2:
+			return random.nextBoolean() ? label + "\tBYTE\tC'" + "ABCDEFGH".substring(random.nextInt(8)) + "'\n"
+					: label + "\tBYTE\tX'" + String.format("%02X", random.nextInt(256)) + "'\n";
+		case 3:
+			return relocatableCount > 1 ? label + "\tWORD\t" + difference(random) + "\n" : label + "\tWORD\t0\n";
+		default:
+			return relocatableCount > 1 ? label + "\tEQU\t" + difference(random) + "\n" : label + "\tEQU\t*\n";
+		}
+	}
+
+	/**
+	 * 가장 최근의 주소 label과 그 앞의 주소 label 하나의 차. 두 label 모두 재배치 값이므로 결과는 절대값이다.
+	 */
+	private String difference(Random random) {
+		return "L" + relocatable[relocatableCount - 1] + "-L" + relocatable[random.nextInt(relocatableCount - 1)];
+	}
+
+	/**
+	 * n번째 줄에서 window 줄 안쪽에 있는 label 하나를 고른다. 앞, 뒤 모두 가능하다.
+	 */
+	private String nearby(Random random, int n) {
+		int target = n + random.nextInt(2 * window + 1) - window;
+		if (target < 0)
+			target = -target;
+		if (target >= lines)
+			target = lines - 1 - (target - lines) % lines;
+		return "L" + target;
+	}
+
+	/**
+	 * section s의 EXTDEF symbol 이름 앞부분
+	 */
+	private static String definePrefix(int s) {
+		return "D" + Integer.toString(s, 36).toUpperCase() + "_";
+	}
+
+	private static String symbolList(String prefix, int count) {
+		StringBuilder list = new StringBuilder();
+		for (int k = 0; k < count; k++) {
+			if (k > 0)
+				list.append(',');
+			list.append(prefix).append(k);
+		}
+		return list.toString();
+	}
+}
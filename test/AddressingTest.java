@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 주소 operand의 object code를 two-pass(Assembler)와 one-pass(OnePassAssembler)로 만들어 확인한다.
+ */
+class AddressingTest {
+	private static InstTable instTable;
+
+	@TempDir
+	Path dir;
+
+	@BeforeAll
+	static void loadInstTable() {
+		instTable = InstTable.load("inst.data");
+	}
+
+	/** PTR이 뒤에 정의되므로 one-pass는 fix-up으로 displacement를 채운다. */
+	private static final String INDIRECT = String.join("\n",
+			"PROG\tSTART\t0",
+			"\tJ\t@PTR",
+			"\tLDA\t@PTR",
+			"\tRSUB",
+			"\tRESB\t9",
+			"PTR\tWORD\t3",
+			"\tEND\tPROG", "");
+
+	@Test
+	void indirectOperandTwoPass() throws IOException {
+		List<String> records = assemble(INDIRECT, false);
+		assertEquals("T000000093E200F02200C4F0000", records.get(1));
+	}
+
+	@Test
+	void indirectOperandOnePass() throws IOException {
+		List<String> records = onePass(INDIRECT);
+		assertEquals("T000000093E200F02200C4F0000", records.get(1));
+	}
+
+	@Test
+	void indirectOperandOutOfRangeIsRelaxed() throws IOException {
+		String source = String.join("\n",
+				"PROG\tSTART\t0",
+				"\tSTA\t@FAR",
+				"\tRSUB",
+				"\tRESB\t5000",
+				"FAR\tWORD\t3",
+				"\tEND\tPROG", "");
+		List<String> records = assemble(source, true);
+		assertEquals("T000000070E10138F4F0000", records.get(1));
+		assertEquals("M00000105+PROG", records.get(3));
+	}
+
+	/** 배치되기 전에 다시 나온 literal이 그 사이에 추가된 literal의 내용을 덮어쓰지 않아야 한다. */
+	private static final String REPEATED_LITERAL = String.join("\n",
+			"PROG\tSTART\t0",
+			"\tLDA\t=X'05'",
+			"\tLDA\t=C'AB'",
+			"\tLDA\t=X'05'",
+			"\tRSUB",
+			"\tEND\tPROG", "");
+
+	@Test
+	void repeatedLiteralTwoPass() throws IOException {
+		List<String> records = assemble(REPEATED_LITERAL, false);
+		assertEquals("T0000000F0320090320070320034F0000054142", records.get(1));
+	}
+
+	@Test
+	void repeatedLiteralOnePass() throws IOException {
+		List<String> records = onePass(REPEATED_LITERAL);
+		assertEquals("T0000000F0320090320070320034F0000054142", records.get(1));
+	}
+
+	private List<String> assemble(String source, boolean relax) throws IOException {
+		Path input = write(source);
+		Assembler assembler = new Assembler(instTable);
+		assembler.relax = relax;
+		assembler.assemble(input.toString(), dir.resolve("symtab").toString(), dir.resolve("literaltab").toString(),
+				dir.resolve("output").toString());
+		return records(dir.resolve("output"));
+	}
+
+	private List<String> onePass(String source) throws IOException {
+		Path input = write(source);
+		new OnePassAssembler(instTable).assemble(input.toString(), dir.resolve("symtab").toString(),
+				dir.resolve("literaltab").toString(), dir.resolve("output").toString());
+		return records(dir.resolve("output"));
+	}
+
+	private Path write(String source) throws IOException {
+		Path input = dir.resolve("input.txt");
+		Files.writeString(input, source);
+		return input;
+	}
+
+	private static List<String> records(Path output) throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (String line : Files.readAllLines(output))
+			if (!line.isEmpty())
+				records.add(line);
+		return records;
+	}
+}
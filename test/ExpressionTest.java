@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * * /의 피연산자에 같은 section의 재배치 symbol 쌍이 쓰인 식을 확인한다.
+ */
+class ExpressionTest {
+	@TempDir
+	Path dir;
+
+	private static final String SOURCE = String.join("\n",
+			"PROG\tSTART\t0",
+			"A\tRESB\t8",
+			"B\tRESB\t2",
+			"HALF\tEQU\t(B-A)/2",
+			"\tWORD\t(B-A)/2",
+			"\tWORD\t(*-A)/3",
+			"\tWORD\t2*(B-A)/4+A",
+			"\tWORD\tHALF*2",
+			"\tWORD\t(B-A)*(B-A)",
+			"\tEND\tPROG", "");
+
+	private static final List<String> RECORDS = List.of(
+			"T00000A0F000004000004000004000008000040",
+			"M00001006+PROG");
+
+	@Test
+	void pairedRelocatableTermsTwoPass() throws IOException {
+		Path input = write(SOURCE);
+		new Assembler(InstTable.load("inst.data")).assemble(input.toString(), dir.resolve("symtab").toString(),
+				dir.resolve("literaltab").toString(), dir.resolve("output").toString());
+		assertEquals(RECORDS, records(dir.resolve("output")));
+	}
+
+	@Test
+	void pairedRelocatableTermsOnePass() throws IOException {
+		Path input = write(SOURCE);
+		new OnePassAssembler(InstTable.load("inst.data")).assemble(input.toString(),
+				dir.resolve("symtab").toString(), dir.resolve("literaltab").toString(),
+				dir.resolve("output").toString());
+		assertEquals(RECORDS, records(dir.resolve("output")));
+	}
+
+	@Test
+	void unpairedTermsAreRejected() {
+		LabelTable symTab = new LabelTable();
+		symTab.putName("A", 0);
+		symTab.putName("B", 8);
+		LabelTable externals = new LabelTable();
+		externals.putName("EXT", 0);
+		BitSet absolutes = new BitSet();
+
+		Expression paired = Expression.compile("(B-A)/2");
+		assertEquals(4, paired.evaluate(0, symTab, externals, absolutes));
+		assertNull(paired.error);
+		assertEquals(0, paired.relocation);
+
+		assertEquals("relocatable term in * or /", evaluate("B/2", symTab, externals, absolutes));
+		assertEquals("relocatable term in * or /", evaluate("(B+A)/2", symTab, externals, absolutes));
+		assertEquals("external reference in * or /", evaluate("(EXT-A)/2", symTab, externals, absolutes));
+	}
+
+	private static String evaluate(String text, LabelTable symTab, LabelTable externals, BitSet absolutes) {
+		Expression expression = Expression.compile(text);
+		expression.evaluate(0, symTab, externals, absolutes);
+		return expression.error;
+	}
+
+	private Path write(String source) throws IOException {
+		Path input = dir.resolve("input.txt");
+		Files.writeString(input, source);
+		return input;
+	}
+
+	private static List<String> records(Path output) throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (String line : Files.readAllLines(output))
+			if (line.startsWith("T") || line.startsWith("M"))
+				records.add(line);
+		return records;
+	}
+}
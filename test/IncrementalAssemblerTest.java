@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * IncrementalAssembler의 cache가 손상된 파일을 miss로 처리하는지, 파일 수를 maxEntries 이하로 유지하는지 확인한다.
+ */
+class IncrementalAssemblerTest {
+	@TempDir
+	Path dir;
+
+	private static String section(String name, int value) {
+		return String.join("\n", name + "\tSTART\t0", "\tLDA\t#" + value, "\tRSUB", "");
+	}
+
+	@Test
+	void corruptEntryIsMiss() throws IOException {
+		Path input = dir.resolve("input.txt");
+		Files.writeString(input, section("PROG", 1) + "\tEND\tPROG\n");
+		File cache = dir.resolve("cache").toFile();
+		IncrementalAssembler assembler = new IncrementalAssembler("inst.data", cache);
+		assemble(assembler, input);
+		byte[] expected = Files.readAllBytes(dir.resolve("output"));
+
+		File[] entries = cache.listFiles();
+		assertEquals(1, entries.length);
+		// symtab 길이를 음수로 바꾼다.
+		try (RandomAccessFile file = new RandomAccessFile(entries[0], "rw")) {
+			file.seek(8);
+			file.writeInt(-1);
+		}
+		assemble(assembler, input);
+		assertEquals(0, assembler.hits);
+		assertEquals(1, assembler.misses);
+		assertArrayEquals(expected, Files.readAllBytes(dir.resolve("output")));
+
+		assemble(assembler, input);
+		assertEquals(1, assembler.hits);
+	}
+
+	@Test
+	void oldEntriesAreEvicted() throws IOException {
+		Path input = dir.resolve("input.txt");
+		File cache = dir.resolve("cache").toFile();
+		IncrementalAssembler assembler = new IncrementalAssembler("inst.data", cache);
+		assembler.maxEntries = 3;
+		for (int i = 0; i < 3; i++) {
+			Files.writeString(input, section("PROG", i) + section("SUB", i).replace("START", "CSECT")
+					+ "\tEND\tPROG\n");
+			assemble(assembler, input);
+			assertEquals(2, assembler.misses);
+			assertEquals(Math.min(3, 2 * (i + 1)), cache.listFiles().length);
+		}
+		// 마지막 실행에서는 5개 중 이번에 쓰지 않은 3개 가운데 2개를 지운다.
+		assertEquals(2, assembler.evicted);
+	}
+
+	private void assemble(IncrementalAssembler assembler, Path input) throws IOException {
+		assembler.assemble(input.toString(), dir.resolve("symtab").toString(), dir.resolve("literaltab").toString(),
+				dir.resolve("output").toString());
+	}
+}
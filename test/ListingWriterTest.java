@@ -0,0 +1,40 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * listing의 줄 번호가 소스 파일의 줄 번호인지, 긴 object code 뒤에도 comment가 떨어져 출력되는지 확인한다.
+ */
+class ListingWriterTest {
+	@TempDir
+	Path dir;
+
+	private static final String SOURCE = String.join("\n",
+			"PROG\tSTART\t0",
+			".",
+			". comment",
+			"\tLDA\t#1\tload one",
+			"\tBYTE\tC'ABCDEFGHIJKL'\tlong bytes",
+			"\tEND\tPROG", "");
+
+	@Test
+	void linesAreSourceLinesAndCodeIsPadded() throws IOException {
+		Path input = dir.resolve("input.txt");
+		Files.writeString(input, SOURCE);
+		Assembler assembler = new Assembler(InstTable.load("inst.data"));
+		assembler.listingFile = dir.resolve("listing").toString();
+		assembler.assemble(input.toString(), dir.resolve("symtab").toString(), dir.resolve("literaltab").toString(),
+				dir.resolve("output").toString());
+		List<String> listing = Files.readAllLines(dir.resolve("listing"));
+		assertEquals("    4 0000          LDA     #1                010001    load one", listing.get(2));
+		assertEquals("    5 0003          BYTE    C'ABCDEFGHIJKL'   4142434445464748494A4B4C long bytes",
+				listing.get(3));
+		assertEquals("    6               END     PROG", listing.get(4));
+	}
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * ObjectWriter가 T record를 나누는 규칙을 two-pass와 one-pass 출력으로 확인한다.
+ */
+class ObjectWriterTest {
+	@TempDir
+	Path dir;
+
+	/** 30 byte보다 작은 RESB, RESW 빈 공간에서도 T record가 끝나야 한다. */
+	private static final String GAPS = String.join("\n",
+			"PROG\tSTART\t0",
+			"FIRST\tWORD\t1",
+			"\tRESB\t3",
+			"SECOND\tWORD\t2",
+			"THIRD\tWORD\t3",
+			"\tRESW\t1",
+			"FOURTH\tWORD\t4",
+			"\tEND\tFIRST", "");
+
+	private static final List<String> GAP_RECORDS = List.of(
+			"T00000003000001",
+			"T00000606000002000003",
+			"T00000F03000004");
+
+	@Test
+	void textRecordsBreakAtSmallGapsTwoPass() throws IOException {
+		Path input = write(GAPS);
+		new Assembler(InstTable.load("inst.data")).assemble(input.toString(), dir.resolve("symtab").toString(),
+				dir.resolve("literaltab").toString(), dir.resolve("output").toString());
+		assertEquals(GAP_RECORDS, textRecords(dir.resolve("output")));
+	}
+
+	@Test
+	void textRecordsBreakAtSmallGapsOnePass() throws IOException {
+		Path input = write(GAPS);
+		new OnePassAssembler(InstTable.load("inst.data")).assemble(input.toString(),
+				dir.resolve("symtab").toString(), dir.resolve("literaltab").toString(),
+				dir.resolve("output").toString());
+		assertEquals(GAP_RECORDS, textRecords(dir.resolve("output")));
+	}
+
+	private Path write(String source) throws IOException {
+		Path input = dir.resolve("input.txt");
+		Files.writeString(input, source);
+		return input;
+	}
+
+	private static List<String> textRecords(Path output) throws IOException {
+		List<String> records = new ArrayList<String>();
+		for (String line : Files.readAllLines(output))
+			if (line.startsWith("T"))
+				records.add(line);
+		return records;
+	}
+}